@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.io;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+
+/**
+ * Cache mapping Class objects to values of type T, keyed by the class itself
+ * through a {@link ClassValue}, so that a cached value is found without any
+ * hashing or locking and is unloaded together with its class.  Values are
+ * held through SoftReferences, so that they can be reclaimed under memory
+ * pressure and recomputed on demand.
+ *
+ * @param <T> type of cached values
+ */
+abstract class ClassCache<T> {
+
+    /**
+     * SoftReference to a cached value, remembering its class so that it can
+     * be removed from the cache once cleared.  The class is only weakly
+     * reachable from here, so that a cleared reference waiting in the queue
+     * does not keep the class and its loader alive.
+     */
+    private static class CacheRef<T> extends SoftReference<T> {
+        private WeakReference<Class<?>> type;
+
+        CacheRef(T referent, ReferenceQueue<T> queue, Class<?> type) {
+            super(referent, queue);
+            this.type = new WeakReference<>(type);
+        }
+
+        /**
+         * Returns the class of the value, or null if it has already been
+         * returned or unloaded, so that the entry is removed at most once.
+         */
+        Class<?> takeType() {
+            WeakReference<Class<?>> type = this.type;
+            this.type = null;
+            return (type == null) ? null : type.get();
+        }
+    }
+
+    private final ReferenceQueue<T> queue;
+    private final ClassValue<CacheRef<T>> map;
+
+    /**
+     * Computes the value to be cached for the given class.  Must not return
+     * null; exceptions are propagated to the caller of {@link #get} and
+     * nothing is cached.
+     */
+    protected abstract T computeValue(Class<?> cl);
+
+    protected ClassCache() {
+        queue = new ReferenceQueue<>();
+        map = new ClassValue<>() {
+            @Override
+            protected CacheRef<T> computeValue(Class<?> type) {
+                processQueue();
+                T v = ClassCache.this.computeValue(type);
+                Objects.requireNonNull(v);
+                return new CacheRef<>(v, queue, type);
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value for the given class, computing it first if
+     * it is not cached yet or has been reclaimed.  The queue of reclaimed
+     * values is only drained when a value is computed, so that a hit costs
+     * no more than the ClassValue lookup.
+     */
+    T get(Class<?> cl) {
+        while (true) {
+            CacheRef<T> ref = map.get(cl);
+            T val = ref.get();
+            if (val != null) {
+                return val;
+            }
+            // the value has been reclaimed, compute it again
+            processQueue();
+            if (ref.takeType() != null) {
+                map.remove(cl);
+            }
+        }
+    }
+
+    /**
+     * Removes the entries of values that have been reclaimed.
+     */
+    private void processQueue() {
+        Reference<? extends T> ref;
+        while ((ref = queue.poll()) != null) {
+            @SuppressWarnings("unchecked")
+            CacheRef<? extends T> cacheRef = (CacheRef<? extends T>) ref;
+            Class<?> type = cacheRef.takeType();
+            if (type != null) {
+                map.remove(type);
+            }
+        }
+    }
+}
@@ -31,7 +31,6 @@ import java.security.Security;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.function.Function;
 
 import jdk.internal.misc.SharedSecrets;
@@ -434,6 +433,16 @@ public interface ObjectInputFilter {
              * True to check the component type for arrays.
              */
             private final boolean checkComponentType;
+            /**
+             * The result of the class filters, computed once per class.
+             */
+            private final ClassValue<java.io.ObjectInputFilter.Status> decisions =
+                new ClassValue<>() {
+                    @Override
+                    protected java.io.ObjectInputFilter.Status computeValue(Class<?> cl) {
+                        return decide(cl);
+                    }
+                };
 
             /**
              * Returns an ObjectInputFilter from a string of patterns.
@@ -644,13 +653,26 @@ public interface ObjectInputFilter {
                         // Primitive types are undecided; let someone else decide
                         return java.io.ObjectInputFilter.Status.UNDECIDED;
                     } else {
-                        // Find any filter that allowed or rejected the class
-                        final Class<?> cl = clazz;
-                        Optional<java.io.ObjectInputFilter.Status> status = filters.stream()
-                                .map(f -> f.apply(cl))
-                                .filter(p -> p != java.io.ObjectInputFilter.Status.UNDECIDED)
-                                .findFirst();
-                        return status.orElse(java.io.ObjectInputFilter.Status.UNDECIDED);
+                        // The class filters depend only on the class, so
+                        // they are evaluated once and the result remembered
+                        return decisions.get(clazz);
+                    }
+                }
+                return java.io.ObjectInputFilter.Status.UNDECIDED;
+            }
+
+            /**
+             * Returns the status of the first class filter that allowed
+             * or rejected the class, or UNDECIDED if none did.
+             *
+             * @param cl a class, not an array or primitive type
+             * @return the status from the class filters
+             */
+            private java.io.ObjectInputFilter.Status decide(Class<?> cl) {
+                for (Function<Class<?>, java.io.ObjectInputFilter.Status> f : filters) {
+                    java.io.ObjectInputFilter.Status status = f.apply(cl);
+                    if (status != java.io.ObjectInputFilter.Status.UNDECIDED) {
+                        return status;
                     }
                 }
                 return java.io.ObjectInputFilter.Status.UNDECIDED;
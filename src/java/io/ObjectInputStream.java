@@ -236,6 +236,13 @@ public class ObjectInputStream
     /** marker for unshared objects in internal handle table */
     private static final Object unsharedMarker = new Object();
 
+    /**
+     * Maximum number of bytes read from the underlying stream at a time, and
+     * size of the block data buffer; see the "jdk.serialBlockSize" property
+     * of ObjectOutputStream.
+     */
+    private static final int MAX_BLOCK_SIZE = ObjectOutputStream.blockSize();
+
     /**
      * immutable table mapping primitive type names to corresponding
      * class objects
@@ -2825,8 +2832,6 @@ public class ObjectInputStream
     private class BlockDataInputStream
         extends java.io.InputStream implements DataInput
     {
-        /** maximum data block length */
-        private static final int MAX_BLOCK_SIZE = 1024;
         /** maximum data block header length */
         private static final int MAX_HEADER_SIZE = 5;
         /** (tunable) length of char buffer (for reading strings) */
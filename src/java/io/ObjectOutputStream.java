@@ -206,6 +206,25 @@ public class ObjectOutputStream
     /** custom storage for debug trace info */
     private final DebugTraceInfoStack debugInfoStack;
 
+    /**
+     * Maximum data block length, and size of the block data buffer.  Can be
+     * raised from its default of 1024 bytes up to 64 KB with the
+     * "jdk.serialBlockSize" system property, to write fewer, larger blocks
+     * to the underlying stream.  Any block length can be read by an
+     * ObjectInputStream.
+     */
+    private static final int MAX_BLOCK_SIZE = blockSize();
+
+    /**
+     * Returns the configured block data size, clamped to [1 KB, 64 KB].
+     */
+    static int blockSize() {
+        int size = java.security.AccessController.doPrivileged(
+            new sun.security.action.GetIntegerAction(
+                "jdk.serialBlockSize", 1024)).intValue();
+        return Math.max(1024, Math.min(size, 64 * 1024));
+    }
+
     /**
      * value of "sun.io.serialization.extendedDebugInfo" property,
      * as true or false for extended information about exception's place
@@ -1745,8 +1764,6 @@ public class ObjectOutputStream
     private static class BlockDataOutputStream
         extends java.io.OutputStream implements DataOutput
     {
-        /** maximum data block length */
-        private static final int MAX_BLOCK_SIZE = 1024;
         /** maximum data block header length */
         private static final int MAX_HEADER_SIZE = 5;
         /** (tunable) length of char buffer (for writing strings) */
@@ -2270,7 +2287,7 @@ public class ObjectOutputStream
             next = new int[initialCapacity];
             objs = new Object[initialCapacity];
             threshold = (int) (initialCapacity * loadFactor);
-            clear();
+            Arrays.fill(spine, -1);
         }
 
         /**
@@ -2309,7 +2326,15 @@ public class ObjectOutputStream
          * Resets table to its initial (empty) state.
          */
         void clear() {
-            Arrays.fill(spine, -1);
+            if (size < (spine.length >> 3)) {
+                // only reset the hash chains in use, so that clearing a
+                // table grown by an earlier large graph stays cheap
+                for (int i = 0; i < size; i++) {
+                    spine[hash(objs[i]) % spine.length] = -1;
+                }
+            } else {
+                Arrays.fill(spine, -1);
+            }
             Arrays.fill(objs, 0, size, null);
             size = 0;
         }
@@ -27,7 +27,6 @@ package java.io;
 
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
-import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -50,6 +49,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -95,19 +95,22 @@ public class ObjectStreamClass implements java.io.Serializable {
 
     private static class Caches {
         /** cache mapping local classes -> descriptors */
-        static final ConcurrentMap<WeakClassKey,Reference<?>> localDescs =
-            new ConcurrentHashMap<>();
-
-        /** cache mapping field group/local desc pairs -> field reflectors */
-        static final ConcurrentMap<FieldReflectorKey,Reference<?>> reflectors =
-            new ConcurrentHashMap<>();
-
-        /** queue for WeakReferences to local classes */
-        private static final ReferenceQueue<Class<?>> localDescsQueue =
-            new ReferenceQueue<>();
-        /** queue for WeakReferences to field reflectors keys */
-        private static final ReferenceQueue<Class<?>> reflectorsQueue =
-            new ReferenceQueue<>();
+        static final ClassCache<ObjectStreamClass> localDescs =
+            new ClassCache<>() {
+                @Override
+                protected ObjectStreamClass computeValue(Class<?> type) {
+                    return new ObjectStreamClass(type);
+                }
+            };
+
+        /** cache mapping local classes -> field group -> field reflectors */
+        static final ClassCache<Map<FieldReflectorKey, FieldReflector>> reflectors =
+            new ClassCache<>() {
+                @Override
+                protected Map<FieldReflectorKey, FieldReflector> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
     }
 
     /** class associated with this descriptor (if any) */
@@ -334,135 +337,7 @@ public class ObjectStreamClass implements java.io.Serializable {
         if (!(all || java.io.Serializable.class.isAssignableFrom(cl))) {
             return null;
         }
-        processQueue(Caches.localDescsQueue, Caches.localDescs);
-        WeakClassKey key = new WeakClassKey(cl, Caches.localDescsQueue);
-        Reference<?> ref = Caches.localDescs.get(key);
-        Object entry = null;
-        if (ref != null) {
-            entry = ref.get();
-        }
-        EntryFuture future = null;
-        if (entry == null) {
-            EntryFuture newEntry = new EntryFuture();
-            Reference<?> newRef = new SoftReference<>(newEntry);
-            do {
-                if (ref != null) {
-                    Caches.localDescs.remove(key, ref);
-                }
-                ref = Caches.localDescs.putIfAbsent(key, newRef);
-                if (ref != null) {
-                    entry = ref.get();
-                }
-            } while (ref != null && entry == null);
-            if (entry == null) {
-                future = newEntry;
-            }
-        }
-
-        if (entry instanceof ObjectStreamClass) {  // check common case first
-            return (ObjectStreamClass) entry;
-        }
-        if (entry instanceof EntryFuture) {
-            future = (EntryFuture) entry;
-            if (future.getOwner() == Thread.currentThread()) {
-                /*
-                 * Handle nested call situation described by 4803747: waiting
-                 * for future value to be set by a lookup() call further up the
-                 * stack will result in deadlock, so calculate and set the
-                 * future value here instead.
-                 */
-                entry = null;
-            } else {
-                entry = future.get();
-            }
-        }
-        if (entry == null) {
-            try {
-                entry = new ObjectStreamClass(cl);
-            } catch (Throwable th) {
-                entry = th;
-            }
-            if (future.set(entry)) {
-                Caches.localDescs.put(key, new SoftReference<>(entry));
-            } else {
-                // nested lookup call already set future
-                entry = future.get();
-            }
-        }
-
-        if (entry instanceof ObjectStreamClass) {
-            return (ObjectStreamClass) entry;
-        } else if (entry instanceof RuntimeException) {
-            throw (RuntimeException) entry;
-        } else if (entry instanceof Error) {
-            throw (Error) entry;
-        } else {
-            throw new InternalError("unexpected entry: " + entry);
-        }
-    }
-
-    /**
-     * Placeholder used in class descriptor and field reflector lookup tables
-     * for an entry in the process of being initialized.  (Internal) callers
-     * which receive an EntryFuture belonging to another thread as the result
-     * of a lookup should call the get() method of the EntryFuture; this will
-     * return the actual entry once it is ready for use and has been set().  To
-     * conserve objects, EntryFutures synchronize on themselves.
-     */
-    private static class EntryFuture {
-
-        private static final Object unset = new Object();
-        private final Thread owner = Thread.currentThread();
-        private Object entry = unset;
-
-        /**
-         * Attempts to set the value contained by this EntryFuture.  If the
-         * EntryFuture's value has not been set already, then the value is
-         * saved, any callers blocked in the get() method are notified, and
-         * true is returned.  If the value has already been set, then no saving
-         * or notification occurs, and false is returned.
-         */
-        synchronized boolean set(Object entry) {
-            if (this.entry != unset) {
-                return false;
-            }
-            this.entry = entry;
-            notifyAll();
-            return true;
-        }
-
-        /**
-         * Returns the value contained by this EntryFuture, blocking if
-         * necessary until a value is set.
-         */
-        synchronized Object get() {
-            boolean interrupted = false;
-            while (entry == unset) {
-                try {
-                    wait();
-                } catch (InterruptedException ex) {
-                    interrupted = true;
-                }
-            }
-            if (interrupted) {
-                AccessController.doPrivileged(
-                    new PrivilegedAction<>() {
-                        public Void run() {
-                            Thread.currentThread().interrupt();
-                            return null;
-                        }
-                    }
-                );
-            }
-            return entry;
-        }
-
-        /**
-         * Returns the thread that created this EntryFuture.
-         */
-        Thread getOwner() {
-            return owner;
-        }
+        return Caches.localDescs.get(cl);
     }
 
     /**
@@ -1961,6 +1836,11 @@ public class ObjectStreamClass implements java.io.Serializable {
         private final char[] typeCodes;
         /** field types */
         private final Class<?>[] types;
+        /** number of bytes of primitive field data, from offset 0 */
+        private final int primDataSize;
+
+        /** base offset of byte array elements, for unsafe access to buf */
+        private static final long BYTE_BASE = Unsafe.ARRAY_BYTE_BASE_OFFSET;
 
         /**
          * Constructs FieldReflector capable of setting/getting values from the
@@ -1978,7 +1858,7 @@ public class ObjectStreamClass implements java.io.Serializable {
             typeCodes = new char[nfields];
             ArrayList<Class<?>> typeList = new ArrayList<>();
             Set<Long> usedKeys = new HashSet<>();
-
+            int primEnd = 0;
 
             for (int i = 0; i < nfields; i++) {
                 ObjectStreamField f = fields[i];
@@ -1992,11 +1872,48 @@ public class ObjectStreamClass implements java.io.Serializable {
                 typeCodes[i] = f.getTypeCode();
                 if (!f.isPrimitive()) {
                     typeList.add((rf != null) ? rf.getType() : null);
+                } else {
+                    primEnd = Math.max(primEnd,
+                                       offsets[i] + primSize(typeCodes[i]));
                 }
             }
 
             types = typeList.toArray(new Class<?>[typeList.size()]);
             numPrimFields = nfields - types.length;
+            primDataSize = primEnd;
+        }
+
+        /**
+         * Returns the number of bytes taken by a primitive field value
+         * with the given type code.
+         */
+        private static int primSize(char typeCode) {
+            switch (typeCode) {
+                case 'Z':
+                case 'B':
+                    return 1;
+                case 'C':
+                case 'S':
+                    return 2;
+                case 'I':
+                case 'F':
+                    return 4;
+                case 'J':
+                case 'D':
+                    return 8;
+                default:
+                    throw new InternalError();
+            }
+        }
+
+        /**
+         * Checks that buf can hold all primitive field data, so that the
+         * individual values can be accessed without bounds checks.
+         */
+        private void checkPrimData(byte[] buf) {
+            if (buf.length < primDataSize) {
+                throw new ArrayIndexOutOfBoundsException(primDataSize - 1);
+            }
         }
 
         /**
@@ -2018,13 +1935,18 @@ public class ObjectStreamClass implements java.io.Serializable {
             if (obj == null) {
                 throw new NullPointerException();
             }
+            checkPrimData(buf);
             /* assuming checkDefaultSerialize() has been called on the class
              * descriptor this FieldReflector was obtained from, no field keys
              * in array should be equal to Unsafe.INVALID_FIELD_OFFSET.
+             *
+             * Multi-byte values are stored big-endian, as java.io.Bits would,
+             * with a single unaligned access each.
              */
             for (int i = 0; i < numPrimFields; i++) {
                 long key = readKeys[i];
                 int off = offsets[i];
+                long boff = BYTE_BASE + off;
                 switch (typeCodes[i]) {
                     case 'Z':
                         java.io.Bits.putBoolean(buf, off, unsafe.getBoolean(obj, key));
@@ -2035,27 +1957,29 @@ public class ObjectStreamClass implements java.io.Serializable {
                         break;
 
                     case 'C':
-                        java.io.Bits.putChar(buf, off, unsafe.getChar(obj, key));
+                        unsafe.putCharUnaligned(buf, boff, unsafe.getChar(obj, key), true);
                         break;
 
                     case 'S':
-                        java.io.Bits.putShort(buf, off, unsafe.getShort(obj, key));
+                        unsafe.putShortUnaligned(buf, boff, unsafe.getShort(obj, key), true);
                         break;
 
                     case 'I':
-                        java.io.Bits.putInt(buf, off, unsafe.getInt(obj, key));
+                        unsafe.putIntUnaligned(buf, boff, unsafe.getInt(obj, key), true);
                         break;
 
                     case 'F':
-                        java.io.Bits.putFloat(buf, off, unsafe.getFloat(obj, key));
+                        unsafe.putIntUnaligned(buf, boff,
+                            Float.floatToIntBits(unsafe.getFloat(obj, key)), true);
                         break;
 
                     case 'J':
-                        java.io.Bits.putLong(buf, off, unsafe.getLong(obj, key));
+                        unsafe.putLongUnaligned(buf, boff, unsafe.getLong(obj, key), true);
                         break;
 
                     case 'D':
-                        java.io.Bits.putDouble(buf, off, unsafe.getDouble(obj, key));
+                        unsafe.putLongUnaligned(buf, boff,
+                            Double.doubleToLongBits(unsafe.getDouble(obj, key)), true);
                         break;
 
                     default:
@@ -2073,12 +1997,14 @@ public class ObjectStreamClass implements java.io.Serializable {
             if (obj == null) {
                 throw new NullPointerException();
             }
+            checkPrimData(buf);
             for (int i = 0; i < numPrimFields; i++) {
                 long key = writeKeys[i];
                 if (key == Unsafe.INVALID_FIELD_OFFSET) {
                     continue;           // discard value
                 }
                 int off = offsets[i];
+                long boff = BYTE_BASE + off;
                 switch (typeCodes[i]) {
                     case 'Z':
                         unsafe.putBoolean(obj, key, java.io.Bits.getBoolean(buf, off));
@@ -2089,27 +2015,29 @@ public class ObjectStreamClass implements java.io.Serializable {
                         break;
 
                     case 'C':
-                        unsafe.putChar(obj, key, java.io.Bits.getChar(buf, off));
+                        unsafe.putChar(obj, key, unsafe.getCharUnaligned(buf, boff, true));
                         break;
 
                     case 'S':
-                        unsafe.putShort(obj, key, java.io.Bits.getShort(buf, off));
+                        unsafe.putShort(obj, key, unsafe.getShortUnaligned(buf, boff, true));
                         break;
 
                     case 'I':
-                        unsafe.putInt(obj, key, java.io.Bits.getInt(buf, off));
+                        unsafe.putInt(obj, key, unsafe.getIntUnaligned(buf, boff, true));
                         break;
 
                     case 'F':
-                        unsafe.putFloat(obj, key, java.io.Bits.getFloat(buf, off));
+                        unsafe.putFloat(obj, key,
+                            Float.intBitsToFloat(unsafe.getIntUnaligned(buf, boff, true)));
                         break;
 
                     case 'J':
-                        unsafe.putLong(obj, key, java.io.Bits.getLong(buf, off));
+                        unsafe.putLong(obj, key, unsafe.getLongUnaligned(buf, boff, true));
                         break;
 
                     case 'D':
-                        unsafe.putDouble(obj, key, java.io.Bits.getDouble(buf, off));
+                        unsafe.putDouble(obj, key,
+                            Double.longBitsToDouble(unsafe.getLongUnaligned(buf, boff, true)));
                         break;
 
                     default:
@@ -2215,82 +2143,39 @@ public class ObjectStreamClass implements java.io.Serializable {
     {
         // class irrelevant if no fields
         Class<?> cl = (localDesc != null && fields.length > 0) ?
-            localDesc.cl : null;
-        processQueue(Caches.reflectorsQueue, Caches.reflectors);
-        FieldReflectorKey key = new FieldReflectorKey(cl, fields,
-                                                      Caches.reflectorsQueue);
-        Reference<?> ref = Caches.reflectors.get(key);
-        Object entry = null;
-        if (ref != null) {
-            entry = ref.get();
-        }
-        EntryFuture future = null;
-        if (entry == null) {
-            EntryFuture newEntry = new EntryFuture();
-            Reference<?> newRef = new SoftReference<>(newEntry);
-            do {
-                if (ref != null) {
-                    Caches.reflectors.remove(key, ref);
-                }
-                ref = Caches.reflectors.putIfAbsent(key, newRef);
-                if (ref != null) {
-                    entry = ref.get();
-                }
-            } while (ref != null && entry == null);
-            if (entry == null) {
-                future = newEntry;
-            }
-        }
+            localDesc.cl : Void.class;
 
-        if (entry instanceof FieldReflector) {  // check common case first
-            return (FieldReflector) entry;
-        } else if (entry instanceof EntryFuture) {
-            entry = ((EntryFuture) entry).get();
-        } else if (entry == null) {
-            try {
-                entry = new FieldReflector(matchFields(fields, localDesc));
-            } catch (Throwable th) {
-                entry = th;
+        Map<FieldReflectorKey, FieldReflector> clReflectors =
+            Caches.reflectors.get(cl);
+        FieldReflectorKey key = new FieldReflectorKey(fields);
+        FieldReflector reflector = clReflectors.get(key);
+        if (reflector == null) {
+            reflector = new FieldReflector(matchFields(fields, localDesc));
+            FieldReflector oldReflector = clReflectors.putIfAbsent(key, reflector);
+            if (oldReflector != null) {
+                reflector = oldReflector;
             }
-            future.set(entry);
-            Caches.reflectors.put(key, new SoftReference<>(entry));
-        }
-
-        if (entry instanceof FieldReflector) {
-            return (FieldReflector) entry;
-        } else if (entry instanceof InvalidClassException) {
-            throw (InvalidClassException) entry;
-        } else if (entry instanceof RuntimeException) {
-            throw (RuntimeException) entry;
-        } else if (entry instanceof Error) {
-            throw (Error) entry;
-        } else {
-            throw new InternalError("unexpected entry: " + entry);
         }
+        return reflector;
     }
 
     /**
-     * FieldReflector cache lookup key.  Keys are considered equal if they
-     * refer to the same class and equivalent field formats.
+     * FieldReflector cache lookup key, within the reflectors of one class.
+     * Keys are considered equal if they refer to equivalent field formats.
      */
-    private static class FieldReflectorKey extends WeakReference<Class<?>> {
+    private static class FieldReflectorKey {
 
         private final String sigs;
         private final int hash;
-        private final boolean nullClass;
 
-        FieldReflectorKey(Class<?> cl, ObjectStreamField[] fields,
-                          ReferenceQueue<Class<?>> queue)
-        {
-            super(cl, queue);
-            nullClass = (cl == null);
+        FieldReflectorKey(ObjectStreamField[] fields) {
             StringBuilder sbuf = new StringBuilder();
             for (int i = 0; i < fields.length; i++) {
                 ObjectStreamField f = fields[i];
                 sbuf.append(f.getName()).append(f.getSignature());
             }
             sigs = sbuf.toString();
-            hash = System.identityHashCode(cl) + sigs.hashCode();
+            hash = sigs.hashCode();
         }
 
         public int hashCode() {
@@ -2304,11 +2189,7 @@ public class ObjectStreamClass implements java.io.Serializable {
 
             if (obj instanceof FieldReflectorKey) {
                 FieldReflectorKey other = (FieldReflectorKey) obj;
-                Class<?> referent;
-                return (nullClass ? other.nullClass
-                                  : ((referent = get()) != null) &&
-                                    (referent == other.get())) &&
-                    sigs.equals(other.sigs);
+                return sigs.equals(other.sigs);
             } else {
                 return false;
             }
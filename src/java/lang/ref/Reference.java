@@ -314,6 +314,19 @@ public abstract class Reference<T> {
             public void runFinalization() {
                 java.lang.ref.Finalizer.runFinalization();
             }
+
+            @Override
+            public int remove(ReferenceQueue<?> queue, Reference<?>[] refs,
+                              long timeout)
+                throws InterruptedException
+            {
+                return queue.remove(refs, timeout);
+            }
+
+            @Override
+            public long queueLength(ReferenceQueue<?> queue) {
+                return queue.length();
+            }
         });
     }
 
@@ -165,6 +165,52 @@ public class ReferenceQueue<T> {
         }
     }
 
+    /**
+     * Removes up to {@code refs.length} reference objects from this queue
+     * into {@code refs}, blocking as {@link #remove(long)} does until at
+     * least one is available or the timeout expires. All available
+     * references are taken under a single acquisition of the lock.
+     *
+     * @return the number of references removed, zero if the timeout expired
+     */
+    int remove(java.lang.ref.Reference<?>[] refs, long timeout)
+        throws InterruptedException
+    {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Negative timeout value");
+        }
+        synchronized (lock) {
+            if (head == null) {
+                long start = (timeout == 0) ? 0 : System.nanoTime();
+                for (;;) {
+                    lock.wait(timeout);
+                    if (head != null) break;
+                    if (timeout != 0) {
+                        long end = System.nanoTime();
+                        timeout -= (end - start) / 1000_000;
+                        if (timeout <= 0) return 0;
+                        start = end;
+                    }
+                }
+            }
+            int n = 0;
+            java.lang.ref.Reference<? extends T> r;
+            while (n < refs.length && (r = reallyPoll()) != null) {
+                refs[n++] = r;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Returns the number of reference objects in this queue.
+     */
+    long length() {
+        synchronized (lock) {
+            return queueLength;
+        }
+    }
+
     /**
      * Removes the next reference object in this queue, blocking until one
      * becomes available.
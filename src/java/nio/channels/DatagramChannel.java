@@ -33,6 +33,7 @@ import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.spi.AbstractSelectableChannel;
 import java.nio.channels.spi.SelectorProvider;
+import java.util.Objects;
 
 /**
  * A selectable channel for datagram-oriented sockets.
@@ -487,6 +488,271 @@ public abstract class DatagramChannel
     public abstract int send(ByteBuffer src, SocketAddress target)
         throws IOException;
 
+    /**
+     * Receives datagrams via this channel.
+     *
+     * <p> This method attempts to receive up to {@code length} datagrams.
+     * The datagram received <i>i</i>-th is transferred into the buffer
+     * {@code dsts[offset + i]}, as if by the {@link #receive(ByteBuffer)
+     * receive} method, and its source address is stored in {@code
+     * sources[offset + i]}.  If this channel is in blocking mode then this
+     * method waits until at least one datagram is available and then also
+     * receives any further datagrams that are immediately available.  If
+     * this channel is in non-blocking mode then only datagrams that are
+     * immediately available are received.  If an I/O error occurs after one
+     * or more datagrams have been received then this method returns the
+     * number of datagrams received rather than throwing the exception.
+     *
+     * <p> This method performs the same security checks as the {@link
+     * #receive(ByteBuffer) receive} method for each datagram received.  It
+     * may be invoked at any time; if another thread has already initiated a
+     * read operation upon this channel then an invocation of this method will
+     * block until the first operation is complete. </p>
+     *
+     * @implSpec
+     * The default implementation invokes {@link #receive(ByteBuffer)
+     * receive} for each buffer in turn, stopping when it returns {@code null}
+     * or, if this channel is in blocking mode, after the first datagram.
+     *
+     * @param  dsts
+     *         The buffers into which datagrams are to be transferred
+     *
+     * @param  sources
+     *         The array in which the datagrams' source addresses are to be
+     *         stored
+     *
+     * @param  offset
+     *         The offset within the arrays of the first buffer and address
+     *         to be used; must be non-negative and no larger than
+     *         {@code dsts.length} and {@code sources.length}
+     *
+     * @param  length
+     *         The maximum number of datagrams to be received; must be
+     *         non-negative and no larger than {@code dsts.length - offset}
+     *         and {@code sources.length - offset}
+     *
+     * @return  The number of datagrams received, possibly zero if this
+     *          channel is in non-blocking mode
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If the preconditions on the {@code offset} and {@code length}
+     *          parameters do not hold
+     *
+     * @throws  IllegalArgumentException
+     *          If one of the buffers is read-only
+     *
+     * @throws  ClosedChannelException
+     *          If this channel is closed
+     *
+     * @throws  AsynchronousCloseException
+     *          If another thread closes this channel
+     *          while the read operation is in progress
+     *
+     * @throws  ClosedByInterruptException
+     *          If another thread interrupts the current thread
+     *          while the read operation is in progress, thereby
+     *          closing the channel and setting the current thread's
+     *          interrupt status
+     *
+     * @throws  SecurityException
+     *          If a security manager has been installed
+     *          and it does not permit datagrams to be accepted
+     *          from a datagram's sender
+     *
+     * @throws  IOException
+     *          If some other I/O error occurs
+     *
+     * @since 11
+     */
+    public int receive(ByteBuffer[] dsts, SocketAddress[] sources,
+                       int offset, int length)
+        throws IOException
+    {
+        Objects.checkFromIndexSize(offset, length, dsts.length);
+        Objects.checkFromIndexSize(offset, length, sources.length);
+        int n = 0;
+        try {
+            while (n < length) {
+                SocketAddress sa = receive(dsts[offset + n]);
+                if (sa == null)
+                    break;
+                sources[offset + n++] = sa;
+                if (isBlocking())
+                    break;
+            }
+        } catch (IOException x) {
+            if (n == 0)
+                throw x;
+        }
+        return n;
+    }
+
+    /**
+     * Receives datagrams via this channel.
+     *
+     * <p> An invocation of this method of the form {@code c.receive(dsts,
+     * sources)} behaves in exactly the same manner as the invocation
+     *
+     * <blockquote><pre>
+     * c.receive(dsts, sources, 0, dsts.length);</pre></blockquote>
+     *
+     * @param  dsts
+     *         The buffers into which datagrams are to be transferred
+     *
+     * @param  sources
+     *         The array in which the datagrams' source addresses are to be
+     *         stored; must be at least as long as {@code dsts}
+     *
+     * @return  The number of datagrams received, possibly zero if this
+     *          channel is in non-blocking mode
+     *
+     * @throws  IOException
+     *          If an I/O error occurs, as specified for {@link
+     *          #receive(ByteBuffer[],SocketAddress[],int,int)}
+     *
+     * @since 11
+     */
+    public final int receive(ByteBuffer[] dsts, SocketAddress[] sources)
+        throws IOException
+    {
+        return receive(dsts, sources, 0, dsts.length);
+    }
+
+    /**
+     * Sends datagrams via this channel.
+     *
+     * <p> This method attempts to send up to {@code length} datagrams.  The
+     * <i>i</i>-th datagram consists of the bytes remaining in the buffer
+     * {@code srcs[offset + i]} and is sent to the address {@code
+     * targets[offset + i]}, as if by the {@link #send(ByteBuffer,SocketAddress)
+     * send} method.  Datagrams are sent in order.  If this channel is in
+     * non-blocking mode and there is insufficient room in the underlying
+     * output buffer for a datagram then that datagram and the ones following
+     * it are not sent.  If an I/O error occurs after one or more datagrams
+     * have been sent then this method returns the number of datagrams sent
+     * rather than throwing the exception; an error that persists will be
+     * thrown by the next send operation.
+     *
+     * <p> This method performs the same security checks as the {@link
+     * #send(ByteBuffer,SocketAddress) send} method for each datagram sent.  It
+     * may be invoked at any time; if another thread has already initiated a
+     * write operation upon this channel then an invocation of this method
+     * will block until the first operation is complete. </p>
+     *
+     * @implSpec
+     * The default implementation invokes {@link #send(ByteBuffer,SocketAddress)
+     * send} for each buffer in turn, stopping when a datagram is not sent.
+     *
+     * @param  srcs
+     *         The buffers containing the datagrams to be sent
+     *
+     * @param  targets
+     *         The addresses to which the datagrams are to be sent
+     *
+     * @param  offset
+     *         The offset within the arrays of the first buffer and address
+     *         to be used; must be non-negative and no larger than
+     *         {@code srcs.length} and {@code targets.length}
+     *
+     * @param  length
+     *         The maximum number of datagrams to be sent; must be
+     *         non-negative and no larger than {@code srcs.length - offset}
+     *         and {@code targets.length - offset}
+     *
+     * @return  The number of datagrams sent, which will be {@code length}
+     *          unless this channel is in non-blocking mode or an I/O error
+     *          occurred after some datagrams were sent
+     *
+     * @throws  IndexOutOfBoundsException
+     *          If the preconditions on the {@code offset} and {@code length}
+     *          parameters do not hold
+     *
+     * @throws  AlreadyConnectedException
+     *          If this channel is connected to a different address
+     *          from one of the target addresses
+     *
+     * @throws  ClosedChannelException
+     *          If this channel is closed
+     *
+     * @throws  AsynchronousCloseException
+     *          If another thread closes this channel
+     *          while the write operation is in progress
+     *
+     * @throws  ClosedByInterruptException
+     *          If another thread interrupts the current thread
+     *          while the write operation is in progress, thereby
+     *          closing the channel and setting the current thread's
+     *          interrupt status
+     *
+     * @throws  UnresolvedAddressException
+     *          If one of the target addresses is not fully resolved
+     *
+     * @throws  UnsupportedAddressTypeException
+     *          If the type of one of the target addresses is not supported
+     *
+     * @throws  SecurityException
+     *          If a security manager has been installed
+     *          and it does not permit datagrams to be sent
+     *          to one of the target addresses
+     *
+     * @throws  IOException
+     *          If some other I/O error occurs
+     *
+     * @since 11
+     */
+    public int send(ByteBuffer[] srcs, SocketAddress[] targets,
+                    int offset, int length)
+        throws IOException
+    {
+        Objects.checkFromIndexSize(offset, length, srcs.length);
+        Objects.checkFromIndexSize(offset, length, targets.length);
+        int n = 0;
+        try {
+            while (n < length) {
+                ByteBuffer src = srcs[offset + n];
+                if (send(src, targets[offset + n]) == 0 && src.hasRemaining())
+                    break;
+                n++;
+            }
+        } catch (IOException x) {
+            if (n == 0)
+                throw x;
+        }
+        return n;
+    }
+
+    /**
+     * Sends datagrams via this channel.
+     *
+     * <p> An invocation of this method of the form {@code c.send(srcs,
+     * targets)} behaves in exactly the same manner as the invocation
+     *
+     * <blockquote><pre>
+     * c.send(srcs, targets, 0, srcs.length);</pre></blockquote>
+     *
+     * @param  srcs
+     *         The buffers containing the datagrams to be sent
+     *
+     * @param  targets
+     *         The addresses to which the datagrams are to be sent; must be
+     *         at least as long as {@code srcs}
+     *
+     * @return  The number of datagrams sent, which will be {@code srcs.length}
+     *          unless this channel is in non-blocking mode or an I/O error
+     *          occurred after some datagrams were sent
+     *
+     * @throws  IOException
+     *          If an I/O error occurs, as specified for {@link
+     *          #send(ByteBuffer[],SocketAddress[],int,int)}
+     *
+     * @since 11
+     */
+    public final int send(ByteBuffer[] srcs, SocketAddress[] targets)
+        throws IOException
+    {
+        return send(srcs, targets, 0, srcs.length);
+    }
+
 
     // -- ByteChannel operations --
 
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util;
+
+/**
+ * A timer task queue organized as a hierarchical hashed timing wheel, used in
+ * place of the binary heap of TaskQueue when the jdk.util.Timer.wheel system
+ * property is true.  Adding, removing and expiring a task takes constant
+ * time, and TimerTask.cancel unlinks the task immediately rather than leaving
+ * it in the queue until it would have fired.
+ *
+ * The wheel has LEVELS levels of SLOTS slots each.  A slot at level L covers
+ * SLOTS^L milliseconds, and a task is linked into the slot of the lowest
+ * level whose span contains its distance from the current wheel time.  When
+ * the wheel time crosses a slot boundary at level L, the tasks in that slot
+ * are cascaded down to the lower levels, and tasks reaching level 0 are moved
+ * to a list of due tasks ordered on nextExecutionTime.  Ticks are absolute
+ * values of System.currentTimeMillis, so no precision is lost, and a bitmap
+ * of occupied slots per level lets the wheel jump directly to the next tick
+ * at which a slot must be processed instead of stepping through empty ones.
+ *
+ * As with TaskQueue, all methods must be invoked holding this object's
+ * monitor.  The heap operations inherited from TaskQueue are not used.
+ */
+class TaskWheel extends TaskQueue {
+    private static final int BITS   = 6;
+    private static final int SLOTS  = 1 << BITS;
+    private static final int MASK   = SLOTS - 1;
+    private static final int LEVELS = 6;
+
+    /**
+     * The slot value of a task on the due list.
+     */
+    private static final int DUE = LEVELS * SLOTS;
+
+    /**
+     * The heads of the doubly linked task lists, indexed by
+     * level * SLOTS + slot.
+     */
+    private final TimerTask[] slots = new TimerTask[LEVELS * SLOTS];
+
+    /**
+     * Bitmaps of the non-empty slots of each level.
+     */
+    private final long[] occupied = new long[LEVELS];
+
+    /**
+     * The tasks that are due, ordered on nextExecutionTime.
+     */
+    private TimerTask dueHead, dueTail;
+
+    /**
+     * The current wheel time; all ticks up to and including it have been
+     * processed.
+     */
+    private long now = System.currentTimeMillis();
+
+    /**
+     * The number of tasks in the wheel.
+     */
+    private int size;
+
+    /**
+     * The time up to which the timer thread is waiting, or Long.MIN_VALUE if
+     * it is not waiting.
+     */
+    long waitUntil = Long.MIN_VALUE;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void add(TimerTask task) {
+        task.wheel = this;
+        link(task);
+        size++;
+    }
+
+    boolean isNext(TimerTask task) {
+        return task.nextExecutionTime < waitUntil;
+    }
+
+    /**
+     * Removes the specified task from the wheel, if it is linked.
+     */
+    void remove(TimerTask task) {
+        int slot = task.slot;
+        if (slot < 0)
+            return;
+        TimerTask p = task.prev, n = task.next;
+        if (slot == DUE) {
+            if (p == null) dueHead = n; else p.next = n;
+            if (n == null) dueTail = p; else n.prev = p;
+        } else {
+            if (p == null) {
+                slots[slot] = n;
+                if (n == null)
+                    occupied[slot >>> BITS] &= ~(1L << (slot & MASK));
+            } else {
+                p.next = n;
+            }
+            if (n != null) n.prev = p;
+        }
+        task.prev = task.next = null;
+        task.slot = -1;
+        size--;
+    }
+
+    /**
+     * Advances the wheel to the specified time and removes and returns the
+     * first due task, or returns null if no task is due.
+     */
+    TimerTask poll(long currentTime) {
+        advance(currentTime);
+        TimerTask task = dueHead;
+        if (task == null || task.nextExecutionTime > currentTime)
+            return null;
+        remove(task);
+        return task;
+    }
+
+    /**
+     * Returns the time by which the wheel needs to be polled again.  Must
+     * only be called on a non-empty wheel.
+     */
+    long nextTime() {
+        long next = nextTick();
+        TimerTask task = dueHead;
+        if (task != null && task.nextExecutionTime < next)
+            next = task.nextExecutionTime;
+        return next;
+    }
+
+    void clear() {
+        for (int i = 0; i < slots.length; i++) {
+            for (TimerTask t = slots[i]; t != null; ) {
+                TimerTask n = t.next;
+                t.prev = t.next = null;
+                t.slot = -1;
+                t = n;
+            }
+            slots[i] = null;
+        }
+        for (TimerTask t = dueHead; t != null; ) {
+            TimerTask n = t.next;
+            t.prev = t.next = null;
+            t.slot = -1;
+            t = n;
+        }
+        Arrays.fill(occupied, 0L);
+        dueHead = dueTail = null;
+        size = 0;
+    }
+
+    /**
+     * Removes the tasks that were cancelled before their wheel was known to
+     * TimerTask.cancel, which therefore could not unlink them.
+     */
+    int purge() {
+        int result = 0;
+        for (int i = 0; i <= DUE; i++) {
+            TimerTask t = (i == DUE) ? dueHead : slots[i];
+            while (t != null) {
+                TimerTask n = t.next;
+                if (t.state == TimerTask.CANCELLED) {
+                    remove(t);
+                    result++;
+                }
+                t = n;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Links the task into the slot for its execution time, or onto the due
+     * list if that time has been reached.
+     */
+    private void link(TimerTask task) {
+        long time = task.nextExecutionTime;
+        long delta = time - now;
+        if (delta <= 0) {
+            // Insert from the tail; tasks usually become due in time order
+            TimerTask p = dueTail;
+            while (p != null && p.nextExecutionTime > time)
+                p = p.prev;
+            TimerTask n = (p == null) ? dueHead : p.next;
+            task.prev = p;
+            task.next = n;
+            if (p == null) dueHead = task; else p.next = task;
+            if (n == null) dueTail = task; else n.prev = task;
+            task.slot = DUE;
+        } else {
+            int level = Math.min((63 - Long.numberOfLeadingZeros(delta)) / BITS,
+                                 LEVELS - 1);
+            int index = (int)(time >>> (level * BITS)) & MASK;
+            int slot = level * SLOTS + index;
+            TimerTask head = slots[slot];
+            task.prev = null;
+            task.next = head;
+            if (head != null)
+                head.prev = task;
+            slots[slot] = task;
+            task.slot = slot;
+            occupied[level] |= 1L << index;
+        }
+    }
+
+    /**
+     * Processes all ticks up to the specified time at which a slot must be
+     * cascaded, then sets the wheel time to it.
+     */
+    private void advance(long currentTime) {
+        long tick;
+        while ((tick = nextTick()) <= currentTime) {
+            now = tick;
+            for (int level = LEVELS - 1; level >= 0; level--) {
+                int shift = level * BITS;
+                if ((tick & ((1L << shift) - 1)) == 0)
+                    cascade(level, (int)(tick >>> shift) & MASK);
+            }
+        }
+        if (currentTime > now)
+            now = currentTime;
+    }
+
+    /**
+     * Relinks all tasks of the specified slot relative to the current wheel
+     * time, which moves them to a lower level or onto the due list.
+     */
+    private void cascade(int level, int index) {
+        int slot = level * SLOTS + index;
+        TimerTask t = slots[slot];
+        if (t == null)
+            return;
+        slots[slot] = null;
+        occupied[level] &= ~(1L << index);
+        while (t != null) {
+            TimerTask n = t.next;
+            link(t);
+            t = n;
+        }
+    }
+
+    /**
+     * Returns the first tick after the current wheel time at which an
+     * occupied slot is reached, or Long.MAX_VALUE if all slots are empty.
+     */
+    private long nextTick() {
+        long next = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            long bits = occupied[level];
+            if (bits != 0L) {
+                int shift = level * BITS;
+                long block = now >>> shift;
+                int current = (int)block & MASK;
+                // Distance in slots to the first occupied slot after current
+                int d = Long.numberOfTrailingZeros(
+                    Long.rotateRight(bits, current + 1)) + 1;
+                long tick = (block + d) << shift;
+                if (tick < next)
+                    next = tick;
+            }
+        }
+        return next;
+    }
+}
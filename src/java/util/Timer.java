@@ -25,6 +25,7 @@
 
 package java.util;
 import java.util.concurrent.atomic.AtomicInteger;
+import sun.security.action.GetPropertyAction;
 
 /**
  * A facility for threads to schedule tasks for future execution in a
@@ -76,6 +77,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  * scheduled tasks (thousands should present no problem).  Internally,
  * it uses a binary heap to represent its task queue, so the cost to schedule
  * a task is O(log n), where n is the number of concurrently scheduled tasks.
+ * If the system property {@code jdk.util.Timer.wheel} is {@code true}, a
+ * hierarchical timing wheel is used instead, which schedules, cancels and
+ * expires tasks in constant time and removes cancelled tasks immediately.
  *
  * <p>Implementation note: All constructors start a timer thread.
  *
@@ -92,7 +96,13 @@ public class Timer {
      * and the timer thread consumes, executing timer tasks as appropriate,
      * and removing them from the queue when they're obsolete.
      */
-    private final TaskQueue queue = new TaskQueue();
+    private final TaskQueue queue = USE_WHEEL ? new TaskWheel() : new TaskQueue();
+
+    /**
+     * True if timers use a TaskWheel rather than a heap as their task queue.
+     */
+    private static final boolean USE_WHEEL = Boolean.parseBoolean(
+        GetPropertyAction.privilegedGetProperty("jdk.util.Timer.wheel"));
 
     /**
      * The timer thread.
@@ -406,7 +416,7 @@ public class Timer {
             }
 
             queue.add(task);
-            if (queue.getMin() == task)
+            if (queue.isNext(task))
                 queue.notify();
         }
     }
@@ -454,21 +464,9 @@ public class Timer {
      * @since 1.5
      */
      public int purge() {
-         int result = 0;
-
          synchronized(queue) {
-             for (int i = queue.size(); i > 0; i--) {
-                 if (queue.get(i).state == TimerTask.CANCELLED) {
-                     queue.quickRemove(i);
-                     result++;
-                 }
-             }
-
-             if (result != 0)
-                 queue.heapify();
+             return queue.purge();
          }
-
-         return result;
      }
 }
 
@@ -516,6 +514,10 @@ class TimerThread extends Thread {
      * The main timer loop.  (See class comment.)
      */
     private void mainLoop() {
+        if (queue instanceof TaskWheel) {
+            wheelLoop((TaskWheel)queue);
+            return;
+        }
         while (true) {
             try {
                 TimerTask task;
@@ -557,164 +559,62 @@ class TimerThread extends Thread {
             }
         }
     }
-}
-
-/**
- * This class represents a timer task queue: a priority queue of TimerTasks,
- * ordered on nextExecutionTime.  Each Timer object has one of these, which it
- * shares with its TimerThread.  Internally this class uses a heap, which
- * offers log(n) performance for the add, removeMin and rescheduleMin
- * operations, and constant time performance for the getMin operation.
- */
-class TaskQueue {
-    /**
-     * Priority queue represented as a balanced binary heap: the two children
-     * of queue[n] are queue[2*n] and queue[2*n+1].  The priority queue is
-     * ordered on the nextExecutionTime field: The TimerTask with the lowest
-     * nextExecutionTime is in queue[1] (assuming the queue is nonempty).  For
-     * each node n in the heap, and each descendant of n, d,
-     * n.nextExecutionTime <= d.nextExecutionTime.
-     */
-    private TimerTask[] queue = new TimerTask[128];
-
-    /**
-     * The number of tasks in the priority queue.  (The tasks are stored in
-     * queue[1] up to queue[size]).
-     */
-    private int size = 0;
-
-    /**
-     * Returns the number of tasks currently on the queue.
-     */
-    int size() {
-        return size;
-    }
-
-    /**
-     * Adds a new task to the priority queue.
-     */
-    void add(TimerTask task) {
-        // Grow backing store if necessary
-        if (size + 1 == queue.length)
-            queue = Arrays.copyOf(queue, 2*queue.length);
-
-        queue[++size] = task;
-        fixUp(size);
-    }
-
-    /**
-     * Return the "head task" of the priority queue.  (The head task is an
-     * task with the lowest nextExecutionTime.)
-     */
-    TimerTask getMin() {
-        return queue[1];
-    }
-
-    /**
-     * Return the ith task in the priority queue, where i ranges from 1 (the
-     * head task, which is returned by getMin) to the number of tasks on the
-     * queue, inclusive.
-     */
-    TimerTask get(int i) {
-        return queue[i];
-    }
-
-    /**
-     * Remove the head task from the priority queue.
-     */
-    void removeMin() {
-        queue[1] = queue[size];
-        queue[size--] = null;  // Drop extra reference to prevent memory leak
-        fixDown(1);
-    }
-
-    /**
-     * Removes the ith element from queue without regard for maintaining
-     * the heap invariant.  Recall that queue is one-based, so
-     * 1 <= i <= size.
-     */
-    void quickRemove(int i) {
-        assert i <= size;
-
-        queue[i] = queue[size];
-        queue[size--] = null;  // Drop extra ref to prevent memory leak
-    }
-
-    /**
-     * Sets the nextExecutionTime associated with the head task to the
-     * specified value, and adjusts priority queue accordingly.
-     */
-    void rescheduleMin(long newTime) {
-        queue[1].nextExecutionTime = newTime;
-        fixDown(1);
-    }
 
     /**
-     * Returns true if the priority queue contains no elements.
+     * The main timer loop when the queue is a TaskWheel.  Tasks are taken
+     * from the wheel's list of due tasks, which the wheel refills a whole
+     * slot at a time, rather than by inspecting the head of a heap.
      */
-    boolean isEmpty() {
-        return size==0;
-    }
-
-    /**
-     * Removes all elements from the priority queue.
-     */
-    void clear() {
-        // Null out task references to prevent memory leak
-        for (int i=1; i<=size; i++)
-            queue[i] = null;
-
-        size = 0;
-    }
-
-    /**
-     * Establishes the heap invariant (described above) assuming the heap
-     * satisfies the invariant except possibly for the leaf-node indexed by k
-     * (which may have a nextExecutionTime less than its parent's).
-     *
-     * This method functions by "promoting" queue[k] up the hierarchy
-     * (by swapping it with its parent) repeatedly until queue[k]'s
-     * nextExecutionTime is greater than or equal to that of its parent.
-     */
-    private void fixUp(int k) {
-        while (k > 1) {
-            int j = k >> 1;
-            if (queue[j].nextExecutionTime <= queue[k].nextExecutionTime)
-                break;
-            TimerTask tmp = queue[j];  queue[j] = queue[k]; queue[k] = tmp;
-            k = j;
-        }
-    }
+    private void wheelLoop(TaskWheel wheel) {
+        while (true) {
+            try {
+                TimerTask task;
+                boolean taskFired = false;
+                synchronized(wheel) {
+                    // Wait for queue to become non-empty
+                    if (wheel.isEmpty() && newTasksMayBeScheduled) {
+                        wheel.waitUntil = Long.MAX_VALUE;
+                        try {
+                            do {
+                                wheel.wait();
+                            } while (wheel.isEmpty() && newTasksMayBeScheduled);
+                        } finally {
+                            wheel.waitUntil = Long.MIN_VALUE;
+                        }
+                    }
+                    if (wheel.isEmpty())
+                        break; // Queue is empty and will forever remain; die
 
-    /**
-     * Establishes the heap invariant (described above) in the subtree
-     * rooted at k, which is assumed to satisfy the heap invariant except
-     * possibly for node k itself (which may have a nextExecutionTime greater
-     * than its children's).
-     *
-     * This method functions by "demoting" queue[k] down the hierarchy
-     * (by swapping it with its smaller child) repeatedly until queue[k]'s
-     * nextExecutionTime is less than or equal to those of its children.
-     */
-    private void fixDown(int k) {
-        int j;
-        while ((j = k << 1) <= size && j > 0) {
-            if (j < size &&
-                queue[j].nextExecutionTime > queue[j+1].nextExecutionTime)
-                j++; // j indexes smallest kid
-            if (queue[k].nextExecutionTime <= queue[j].nextExecutionTime)
-                break;
-            TimerTask tmp = queue[j];  queue[j] = queue[k]; queue[k] = tmp;
-            k = j;
+                    long currentTime = System.currentTimeMillis();
+                    task = wheel.poll(currentTime);
+                    if (task == null) { // Nothing due yet; wait
+                        long next = wheel.nextTime();
+                        wheel.waitUntil = next;
+                        try {
+                            wheel.wait(next - currentTime);
+                        } finally {
+                            wheel.waitUntil = Long.MIN_VALUE;
+                        }
+                        continue;
+                    }
+                    synchronized(task.lock) {
+                        if (task.state != TimerTask.CANCELLED) {
+                            taskFired = true;
+                            if (task.period == 0) { // Non-repeating, done
+                                task.state = TimerTask.EXECUTED;
+                            } else { // Repeating task, reschedule
+                                task.nextExecutionTime =
+                                    task.period<0 ? currentTime - task.period
+                                    : task.nextExecutionTime + task.period;
+                                wheel.add(task);
+                            }
+                        }
+                    }
+                }
+                if (taskFired)  // Task fired; run it, holding no locks
+                    task.run();
+            } catch(InterruptedException e) {
+            }
         }
     }
-
-    /**
-     * Establishes the heap invariant (described above) in the entire tree,
-     * assuming nothing about the order of the elements prior to the call.
-     */
-    void heapify() {
-        for (int i = size/2; i >= 1; i--)
-            fixDown(i);
-    }
 }
@@ -87,6 +87,20 @@ public abstract class TimerTask implements Runnable {
      */
     long period = 0;
 
+    /**
+     * The TaskWheel this task was added to, or null if it is not scheduled
+     * on a timer using a TaskWheel.  Written under the wheel's monitor;
+     * volatile because cancel() reads it without holding that monitor.
+     */
+    volatile TaskWheel wheel;
+
+    /**
+     * Links and slot index of this task while in a TaskWheel; the slot is
+     * -1 when the task is not linked.  Guarded by the wheel's monitor.
+     */
+    TimerTask prev, next;
+    int slot = -1;
+
     /**
      * Creates a new timer task.
      */
@@ -121,6 +135,18 @@ public abstract class TimerTask implements Runnable {
      *         executions from taking place.)
      */
     public boolean cancel() {
+        TaskWheel w = wheel;
+        if (w != null) {
+            // Unlink from the wheel at once; lock order is queue, then task
+            synchronized(w) {
+                synchronized(lock) {
+                    boolean result = (state == SCHEDULED);
+                    state = CANCELLED;
+                    w.remove(this);
+                    return result;
+                }
+            }
+        }
         synchronized(lock) {
             boolean result = (state == SCHEDULED);
             state = CANCELLED;
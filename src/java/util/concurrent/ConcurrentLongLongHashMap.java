@@ -0,0 +1,1454 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongUnaryOperator;
+import jdk.internal.misc.Unsafe;
+
+/**
+ * A hash table with primitive {@code long} keys and values, supporting
+ * full concurrency of retrievals and high expected concurrency for
+ * updates. This class has the same design and concurrency properties
+ * as {@link ConcurrentLongHashMap}, but stores values inline in its
+ * nodes, so neither keys nor values are boxed.
+ *
+ * <p>Since every {@code long} is a valid value, methods that would
+ * return {@code null} for an absent key in a map with object values
+ * instead return {@code 0}. Use {@link #containsKey} or {@link
+ * #getOrDefault} to distinguish an absent key from a key mapped to
+ * zero. Methods such as {@link #addAndGet} treat an absent key as
+ * mapped to zero, which suits counters keyed by id.
+ *
+ * @see ConcurrentLongHashMap
+ * @since 11
+ */
+public class ConcurrentLongLongHashMap {
+
+    /*
+     * See ConcurrentLongHashMap, of which this is a copy with long
+     * values.  As values cannot be null, there are no removals
+     * through compute-style methods, and operations report whether a
+     * mapping was present by returning the node found, if any.
+     */
+
+    /* ---------------- Constants -------------- */
+
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MIN_TRANSFER_STRIDE = 16;
+    private static final int RESIZE_STAMP_BITS = 16;
+    private static final int MAX_RESIZERS = (1 << (32 - RESIZE_STAMP_BITS)) - 1;
+    private static final int RESIZE_STAMP_SHIFT = 32 - RESIZE_STAMP_BITS;
+
+    static final int MOVED     = -1; // hash for forwarding nodes
+    static final int RESERVED  = -3; // hash for transient reservations
+    static final int HASH_BITS = 0x7fffffff; // usable bits of normal node hash
+
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /* ---------------- Nodes -------------- */
+
+    /**
+     * Key-value entry. Subclasses with a negative hash field are
+     * special.
+     */
+    static class Node {
+        final int hash;
+        final long key;
+        volatile long val;
+        volatile Node next;
+
+        Node(int hash, long key, long val) {
+            this.hash = hash;
+            this.key = key;
+            this.val = val;
+        }
+
+        Node(int hash, long key, long val, Node next) {
+            this(hash, key, val);
+            this.next = next;
+        }
+
+        /**
+         * Virtualized support for get(); overridden in subclasses.
+         */
+        Node find(int h, long k) {
+            Node e = this;
+            do {
+                if (e.hash == h && e.key == k)
+                    return e;
+            } while ((e = e.next) != null);
+            return null;
+        }
+    }
+
+    /**
+     * A node inserted at head of bins during transfer operations.
+     */
+    static final class ForwardingNode extends Node {
+        final Node[] nextTable;
+        ForwardingNode(Node[] tab) {
+            super(MOVED, 0L, 0L);
+            this.nextTable = tab;
+        }
+
+        Node find(int h, long k) {
+            // loop to avoid arbitrarily deep recursion on forwarding nodes
+            outer: for (Node[] tab = nextTable;;) {
+                Node e; int n;
+                if (tab == null || (n = tab.length) == 0 ||
+                    (e = tabAt(tab, (n - 1) & h)) == null)
+                    return null;
+                for (;;) {
+                    int eh;
+                    if ((eh = e.hash) == h && e.key == k)
+                        return e;
+                    if (eh < 0) {
+                        if (e instanceof ForwardingNode) {
+                            tab = ((ForwardingNode)e).nextTable;
+                            continue outer;
+                        }
+                        else
+                            return e.find(h, k);
+                    }
+                    if ((e = e.next) == null)
+                        return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * A place-holder node used in computeIfAbsent.
+     */
+    static final class ReservationNode extends Node {
+        ReservationNode() {
+            super(RESERVED, 0L, 0L);
+        }
+
+        Node find(int h, long k) {
+            return null;
+        }
+    }
+
+    /**
+     * An operation accepting a key and its value, used by
+     * {@link #forEach}.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        /**
+         * Performs this operation on the given mapping.
+         *
+         * @param key the key
+         * @param value the value
+         */
+        void accept(long key, long value);
+    }
+
+    /* ---------------- Static utilities -------------- */
+
+
+    /**
+     * Returns a power of two table size for the given desired capacity.
+     */
+    private static final int tableSizeFor(int c) {
+        int n = -1 >>> Integer.numberOfLeadingZeros(c - 1);
+        return (n < 0) ? 1 : (n >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY : n + 1;
+    }
+
+    /**
+     * Returns the stamp bits for resizing a table of size n.
+     * Must be negative when shifted left by RESIZE_STAMP_SHIFT.
+     */
+    static final int resizeStamp(int n) {
+        return Integer.numberOfLeadingZeros(n) | (1 << (RESIZE_STAMP_BITS - 1));
+    }
+
+    /* ---------------- Table element access -------------- */
+
+    static final Node tabAt(Node[] tab, int i) {
+        return (Node)U.getObjectAcquire(tab, ((long)i << ASHIFT) + ABASE);
+    }
+
+    static final boolean casTabAt(Node[] tab, int i, Node c, Node v) {
+        return U.compareAndSetObject(tab, ((long)i << ASHIFT) + ABASE, c, v);
+    }
+
+    static final void setTabAt(Node[] tab, int i, Node v) {
+        U.putObjectRelease(tab, ((long)i << ASHIFT) + ABASE, v);
+    }
+
+    /* ---------------- Fields -------------- */
+
+    /**
+     * The array of bins. Lazily initialized upon first insertion.
+     * Size is always a power of two.
+     */
+    transient volatile Node[] table;
+
+    /**
+     * The next table to use; non-null only while resizing.
+     */
+    private transient volatile Node[] nextTable;
+
+    /**
+     * Table initialization and resizing control, as in
+     * ConcurrentHashMap.
+     */
+    private transient volatile int sizeCtl;
+
+    /**
+     * The next table index (plus one) to split while resizing.
+     */
+    private transient volatile int transferIndex;
+
+    /**
+     * The number of mappings.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * The per-instance seed mixed into every key hash, so that the bin
+     * of a key cannot be predicted from outside.
+     */
+    private final long seed = ThreadLocalRandom.current().nextLong();
+
+    /**
+     * Mixes all bits of the key and this map's seed into a non-negative
+     * hash; see ConcurrentLongHashMap.spread.
+     */
+    final int spread(long key) {
+        long h = key + seed;
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return (int)(h ^ (h >>> 33)) & HASH_BITS;
+    }
+
+    /* ---------------- Public operations -------------- */
+
+    /**
+     * Creates a new, empty map with the default initial table size (16).
+     */
+    public ConcurrentLongLongHashMap() {
+    }
+
+    /**
+     * Creates a new, empty map with an initial table size
+     * accommodating the specified number of elements without the need
+     * to dynamically resize.
+     *
+     * @param initialCapacity the implementation performs internal
+     * sizing to accommodate this many elements.
+     * @throws IllegalArgumentException if the initial capacity of
+     * elements is negative
+     */
+    public ConcurrentLongLongHashMap(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException();
+        this.sizeCtl = ((initialCapacity >= (MAXIMUM_CAPACITY >>> 1)) ?
+                        MAXIMUM_CAPACITY :
+                        tableSizeFor(initialCapacity + (initialCapacity >>> 1) + 1));
+    }
+
+    /**
+     * Returns the number of mappings, or {@code Integer.MAX_VALUE} if
+     * there are more.
+     *
+     * @return the number of mappings
+     */
+    public int size() {
+        long n = count.sum();
+        return ((n < 0L) ? 0 :
+                (n > (long)Integer.MAX_VALUE) ? Integer.MAX_VALUE :
+                (int)n);
+    }
+
+    /**
+     * Returns the number of mappings. The value returned is an
+     * estimate; the actual count may differ if there are concurrent
+     * insertions or removals.
+     *
+     * @return the number of mappings
+     */
+    public long mappingCount() {
+        long n = count.sum();
+        return (n < 0L) ? 0L : n; // ignore transient negative values
+    }
+
+    /**
+     * Returns {@code true} if this map contains no mappings.
+     *
+     * @return {@code true} if this map contains no mappings
+     */
+    public boolean isEmpty() {
+        return count.sum() <= 0L; // ignore transient negative values
+    }
+
+    /**
+     * Returns the node for the given key, or null if none.
+     */
+    final Node findNode(long key) {
+        Node[] tab; Node e; int n, eh;
+        int h = spread(key);
+        if ((tab = table) != null && (n = tab.length) > 0 &&
+            (e = tabAt(tab, (n - 1) & h)) != null) {
+            if ((eh = e.hash) == h) {
+                if (e.key == key)
+                    return e;
+            }
+            else if (eh < 0)
+                return e.find(h, key);
+            while ((e = e.next) != null) {
+                if (e.hash == h && e.key == key)
+                    return e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code 0} if this map contains no mapping for the key.
+     *
+     * @param key the key
+     * @return the value, or {@code 0} if none
+     */
+    public long get(long key) {
+        Node p;
+        return ((p = findNode(key)) == null) ? 0L : p.val;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or the
+     * given default value if this map contains no mapping for the
+     * key.
+     *
+     * @param key the key
+     * @param defaultValue the value to return if this map contains
+     * no mapping for the given key
+     * @return the mapping for the key, if present; else the default value
+     */
+    public long getOrDefault(long key, long defaultValue) {
+        Node p;
+        return ((p = findNode(key)) == null) ? defaultValue : p.val;
+    }
+
+    /**
+     * Tests if the specified key is in this map.
+     *
+     * @param key possible key
+     * @return {@code true} if the key is mapped
+     */
+    public boolean containsKey(long key) {
+        return findNode(key) != null;
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value. This method requires a full traversal.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if the value is mapped
+     */
+    public boolean containsValue(long value) {
+        Node[] t;
+        if ((t = table) != null) {
+            Traverser it = new Traverser(t, t.length, 0, t.length);
+            for (Node p; (p = it.advance()) != null; ) {
+                if (p.val == value)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Maps the specified key to the specified value.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the previous value, or {@code 0} if none
+     */
+    public long put(long key, long value) {
+        return putVal(key, value, false);
+    }
+
+    /**
+     * Maps the specified key to the specified value unless the key is
+     * already mapped.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the previous value, or {@code 0} if none
+     */
+    public long putIfAbsent(long key, long value) {
+        return putVal(key, value, true);
+    }
+
+    /** Implementation for put and putIfAbsent */
+    final long putVal(long key, long value, boolean onlyIfAbsent) {
+        int hash = spread(key);
+        int binCount = 0;
+        for (Node[] tab = table;;) {
+            Node f; int n, i, fh;
+            if (tab == null || (n = tab.length) == 0)
+                tab = initTable();
+            else if ((f = tabAt(tab, i = (n - 1) & hash)) == null) {
+                if (casTabAt(tab, i, null, new Node(hash, key, value)))
+                    break;                   // no lock when adding to empty bin
+            }
+            else if ((fh = f.hash) == MOVED)
+                tab = helpTransfer(tab, f);
+            else if (onlyIfAbsent // check first node without acquiring lock
+                     && fh == hash && f.key == key)
+                return f.val;
+            else {
+                Node old = null;
+                long oldVal = 0L;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        if (fh >= 0) {
+                            binCount = 1;
+                            for (Node e = f;; ++binCount) {
+                                if (e.hash == hash && e.key == key) {
+                                    old = e;
+                                    oldVal = e.val;
+                                    if (!onlyIfAbsent)
+                                        e.val = value;
+                                    break;
+                                }
+                                Node pred = e;
+                                if ((e = e.next) == null) {
+                                    pred.next = new Node(hash, key, value);
+                                    break;
+                                }
+                            }
+                        }
+                        else if (f instanceof ReservationNode)
+                            throw new IllegalStateException("Recursive update");
+                    }
+                }
+                if (binCount != 0) {
+                    if (old != null)
+                        return oldVal;
+                    break;
+                }
+            }
+        }
+        addCount(1L, binCount);
+        return 0L;
+    }
+
+    /**
+     * Removes the key (and its corresponding value) from this map.
+     *
+     * @param key the key
+     * @return the previous value, or {@code 0} if none
+     */
+    public long remove(long key) {
+        Node p;
+        return ((p = removeNode(key, false, 0L)) == null) ? 0L : p.val;
+    }
+
+    /**
+     * Removes the entry for a key only if currently mapped to a given
+     * value.
+     *
+     * @param key the key
+     * @param value the expected value
+     * @return {@code true} if the value was removed
+     */
+    public boolean remove(long key, long value) {
+        return removeNode(key, true, value) != null;
+    }
+
+    /**
+     * Implementation for the remove methods: removes and returns the
+     * node for the key, conditional upon its value being cv if
+     * matchValue.  The value of a removed node does not change.
+     */
+    final Node removeNode(long key, boolean matchValue, long cv) {
+        int hash = spread(key);
+        for (Node[] tab = table;;) {
+            Node f; int n, i, fh;
+            if (tab == null || (n = tab.length) == 0 ||
+                (f = tabAt(tab, i = (n - 1) & hash)) == null)
+                break;
+            else if ((fh = f.hash) == MOVED)
+                tab = helpTransfer(tab, f);
+            else {
+                Node removed = null;
+                boolean validated = false;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        if (fh >= 0) {
+                            validated = true;
+                            for (Node e = f, pred = null;;) {
+                                if (e.hash == hash && e.key == key) {
+                                    if (!matchValue || e.val == cv) {
+                                        removed = e;
+                                        if (pred != null)
+                                            pred.next = e.next;
+                                        else
+                                            setTabAt(tab, i, e.next);
+                                    }
+                                    break;
+                                }
+                                pred = e;
+                                if ((e = e.next) == null)
+                                    break;
+                            }
+                        }
+                        else if (f instanceof ReservationNode)
+                            throw new IllegalStateException("Recursive update");
+                    }
+                }
+                if (validated) {
+                    if (removed != null)
+                        addCount(-1L, -1);
+                    return removed;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the entry for a key only if currently mapped to a
+     * given value.
+     *
+     * @param key the key
+     * @param oldValue the expected value
+     * @param newValue the value to associate with the key
+     * @return {@code true} if the value was replaced
+     */
+    public boolean replace(long key, long oldValue, long newValue) {
+        int hash = spread(key);
+        for (Node[] tab = table;;) {
+            Node f; int n, i, fh;
+            if (tab == null || (n = tab.length) == 0 ||
+                (f = tabAt(tab, i = (n - 1) & hash)) == null)
+                break;
+            else if ((fh = f.hash) == MOVED)
+                tab = helpTransfer(tab, f);
+            else {
+                boolean replaced = false, validated = false;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        if (fh >= 0) {
+                            validated = true;
+                            for (Node e = f; e != null; e = e.next) {
+                                if (e.hash == hash && e.key == key) {
+                                    if (e.val == oldValue) {
+                                        e.val = newValue;
+                                        replaced = true;
+                                    }
+                                    break;
+                                }
+                            }
+                        }
+                        else if (f instanceof ReservationNode)
+                            throw new IllegalStateException("Recursive update");
+                    }
+                }
+                if (validated)
+                    return replaced;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        long delta = 0L; // negative number of deletions
+        int i = 0;
+        Node[] tab = table;
+        while (tab != null && i < tab.length) {
+            int fh;
+            Node f = tabAt(tab, i);
+            if (f == null)
+                ++i;
+            else if ((fh = f.hash) == MOVED) {
+                tab = helpTransfer(tab, f);
+                i = 0; // restart
+            }
+            else {
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        Node p = (fh >= 0) ? f : null;
+                        while (p != null) {
+                            --delta;
+                            p = p.next;
+                        }
+                        setTabAt(tab, i++, null);
+                    }
+                }
+            }
+        }
+        if (delta != 0L)
+            addCount(delta, -1);
+    }
+
+    /**
+     * If the specified key is not already mapped, computes its value
+     * using the given mapping function and enters it into this map.
+     * The entire method invocation is performed atomically, so the
+     * function is applied at most once per key.  The computation
+     * should be short and simple, and must not attempt to update any
+     * other mappings of this map.
+     *
+     * @param key the key
+     * @param mappingFunction the function to compute a value from the key
+     * @return the current (existing or computed) value associated with
+     *         the specified key
+     * @throws NullPointerException if the mappingFunction is null
+     * @throws IllegalStateException if the computation detectably
+     *         attempts a recursive update to this map that would
+     *         otherwise never complete
+     * @throws RuntimeException or Error if the mappingFunction does so,
+     *         in which case the mapping is left unestablished
+     */
+    public long computeIfAbsent(long key, LongUnaryOperator mappingFunction) {
+        if (mappingFunction == null)
+            throw new NullPointerException();
+        int h = spread(key);
+        long val = 0L;
+        int binCount = 0;
+        for (Node[] tab = table;;) {
+            Node f; int n, i, fh;
+            if (tab == null || (n = tab.length) == 0)
+                tab = initTable();
+            else if ((f = tabAt(tab, i = (n - 1) & h)) == null) {
+                Node r = new ReservationNode();
+                synchronized (r) {
+                    if (casTabAt(tab, i, null, r)) {
+                        binCount = 1;
+                        Node node = null;
+                        try {
+                            val = mappingFunction.applyAsLong(key);
+                            node = new Node(h, key, val);
+                        } finally {
+                            setTabAt(tab, i, node);
+                        }
+                    }
+                }
+                if (binCount != 0)
+                    break;
+            }
+            else if ((fh = f.hash) == MOVED)
+                tab = helpTransfer(tab, f);
+            else if (fh == h && f.key == key) // check first node without lock
+                return f.val;
+            else {
+                boolean added = false;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        if (fh >= 0) {
+                            binCount = 1;
+                            for (Node e = f;; ++binCount) {
+                                if (e.hash == h && e.key == key) {
+                                    val = e.val;
+                                    break;
+                                }
+                                Node pred = e;
+                                if ((e = e.next) == null) {
+                                    val = mappingFunction.applyAsLong(key);
+                                    if (pred.next != null)
+                                        throw new IllegalStateException("Recursive update");
+                                    added = true;
+                                    pred.next = new Node(h, key, val);
+                                    break;
+                                }
+                            }
+                        }
+                        else if (f instanceof ReservationNode)
+                            throw new IllegalStateException("Recursive update");
+                    }
+                }
+                if (binCount != 0) {
+                    if (!added)
+                        return val;
+                    break;
+                }
+            }
+        }
+        addCount(1L, binCount);
+        return val;
+    }
+
+    /**
+     * If the specified key is mapped, atomically replaces its value
+     * with the result of applying the given function to the key and
+     * the current value.  The computation should be short and
+     * simple, and must not attempt to update any other mappings of
+     * this map.
+     *
+     * @param key the key
+     * @param remappingFunction the function of the key and current
+     * value computing the new value
+     * @return the new value, or {@code 0} if the key is not mapped
+     * @throws NullPointerException if the remappingFunction is null
+     * @throws RuntimeException or Error if the remappingFunction does so,
+     *         in which case the mapping is unchanged
+     */
+    public long computeIfPresent(long key, LongBinaryOperator remappingFunction) {
+        if (remappingFunction == null)
+            throw new NullPointerException();
+        int h = spread(key);
+        for (Node[] tab = table;;) {
+            Node f; int n, i, fh;
+            if (tab == null || (n = tab.length) == 0 ||
+                (f = tabAt(tab, i = (n - 1) & h)) == null)
+                break;
+            else if ((fh = f.hash) == MOVED)
+                tab = helpTransfer(tab, f);
+            else {
+                long val = 0L;
+                boolean validated = false;
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        if (fh >= 0) {
+                            validated = true;
+                            for (Node e = f; e != null; e = e.next) {
+                                if (e.hash == h && e.key == key) {
+                                    e.val = val =
+                                        remappingFunction.applyAsLong(key, e.val);
+                                    break;
+                                }
+                            }
+                        }
+                        else if (f instanceof ReservationNode)
+                            throw new IllegalStateException("Recursive update");
+                    }
+                }
+                if (validated)
+                    return val;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * If the specified key is not already mapped, associates it with
+     * the given value.  Otherwise, replaces the value with the result
+     * of applying the given function to the current and given values.
+     * The entire method invocation is performed atomically.
+     *
+     * @param key the key
+     * @param value the value to use if absent
+     * @param remappingFunction the function to recompute a value if present
+     * @return the new value associated with the specified key
+     * @throws NullPointerException if the remappingFunction is null
+     * @throws RuntimeException or Error if the remappingFunction does so,
+     *         in which case the mapping is unchanged
+     */
+    public long merge(long key, long value, LongBinaryOperator remappingFunction) {
+        if (remappingFunction == null)
+            throw new NullPointerException();
+        return mergeVal(key, value, remappingFunction, false);
+    }
+
+    /**
+     * Atomically adds the given value to the value of the specified
+     * key, treating an absent key as mapped to zero.
+     *
+     * @param key the key
+     * @param delta the value to add
+     * @return the updated value
+     */
+    public long addAndGet(long key, long delta) {
+        return mergeVal(key, delta, null, false);
+    }
+
+    /**
+     * Atomically adds the given value to the value of the specified
+     * key, treating an absent key as mapped to zero.
+     *
+     * @param key the key
+     * @param delta the value to add
+     * @return the previous value, or {@code 0} if none
+     */
+    public long getAndAdd(long key, long delta) {
+        return mergeVal(key, delta, null, true);
+    }
+
+    /**
+     * Implementation for merge, addAndGet and getAndAdd: combines
+     * the current value with the given one using fn, or by addition
+     * if fn is null, and returns the previous value if previous,
+     * else the new value.
+     */
+    final long mergeVal(long key, long value, LongBinaryOperator fn,
+                        boolean previous) {
+        int h = spread(key);
+        long oldVal = 0L, val = 0L;
+        int delta = 0;
+        int binCount = 0;
+        for (Node[] tab = table;;) {
+            Node f; int n, i, fh;
+            if (tab == null || (n = tab.length) == 0)
+                tab = initTable();
+            else if ((f = tabAt(tab, i = (n - 1) & h)) == null) {
+                if (casTabAt(tab, i, null, new Node(h, key, value))) {
+                    delta = 1;
+                    val = value;
+                    break;
+                }
+            }
+            else if ((fh = f.hash) == MOVED)
+                tab = helpTransfer(tab, f);
+            else {
+                synchronized (f) {
+                    if (tabAt(tab, i) == f) {
+                        if (fh >= 0) {
+                            binCount = 1;
+                            for (Node e = f;; ++binCount) {
+                                if (e.hash == h && e.key == key) {
+                                    oldVal = e.val;
+                                    e.val = val = (fn == null) ? oldVal + value :
+                                        fn.applyAsLong(oldVal, value);
+                                    break;
+                                }
+                                Node pred = e;
+                                if ((e = e.next) == null) {
+                                    delta = 1;
+                                    val = value;
+                                    pred.next = new Node(h, key, val);
+                                    break;
+                                }
+                            }
+                        }
+                        else if (f instanceof ReservationNode)
+                            throw new IllegalStateException("Recursive update");
+                    }
+                }
+                if (binCount != 0)
+                    break;
+            }
+        }
+        if (delta != 0)
+            addCount((long)delta, binCount);
+        return previous ? oldVal : val;
+    }
+
+    /**
+     * Returns a string representation of this map, in the style of
+     * {@link java.util.AbstractMap#toString}.
+     *
+     * @return a string representation of this map
+     */
+    public String toString() {
+        Node[] t;
+        int f = (t = table) == null ? 0 : t.length;
+        Traverser it = new Traverser(t, f, 0, f);
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        Node p;
+        if ((p = it.advance()) != null) {
+            for (;;) {
+                sb.append(p.key);
+                sb.append('=');
+                sb.append(p.val);
+                if ((p = it.advance()) == null)
+                    break;
+                sb.append(',').append(' ');
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    /* ---------------- Table Initialization and Resizing -------------- */
+
+    /**
+     * Initializes table, using the size recorded in sizeCtl.
+     */
+    private final Node[] initTable() {
+        Node[] tab; int sc;
+        while ((tab = table) == null || tab.length == 0) {
+            if ((sc = sizeCtl) < 0)
+                Thread.yield(); // lost initialization race; just spin
+            else if (U.compareAndSetInt(this, SIZECTL, sc, -1)) {
+                try {
+                    if ((tab = table) == null || tab.length == 0) {
+                        int n = (sc > 0) ? sc : DEFAULT_CAPACITY;
+                        Node[] nt = new Node[n];
+                        table = tab = nt;
+                        sc = n - (n >>> 2);
+                    }
+                } finally {
+                    sizeCtl = sc;
+                }
+                break;
+            }
+        }
+        return tab;
+    }
+
+    /**
+     * Adds to count, and if table is too small and not already
+     * resizing, initiates transfer. If already resizing, helps
+     * perform transfer if work is available.
+     *
+     * @param x the count to add
+     * @param check if <0, don't check resize
+     */
+    private final void addCount(long x, int check) {
+        LongAdder c = count;
+        c.add(x);
+        if (check >= 0) {
+            Node[] tab, nt; int n, sc; long s = c.sum();
+            while (s >= (long)(sc = sizeCtl) && (tab = table) != null &&
+                   (n = tab.length) < MAXIMUM_CAPACITY) {
+                int rs = resizeStamp(n);
+                if (sc < 0) {
+                    if ((sc >>> RESIZE_STAMP_SHIFT) != rs || sc == rs + 1 ||
+                        sc == rs + MAX_RESIZERS || (nt = nextTable) == null ||
+                        transferIndex <= 0)
+                        break;
+                    if (U.compareAndSetInt(this, SIZECTL, sc, sc + 1))
+                        transfer(tab, nt);
+                }
+                else if (U.compareAndSetInt(this, SIZECTL, sc,
+                                             (rs << RESIZE_STAMP_SHIFT) + 2))
+                    transfer(tab, null);
+                s = c.sum();
+            }
+        }
+    }
+
+    /**
+     * Helps transfer if a resize is in progress.
+     */
+    final Node[] helpTransfer(Node[] tab, Node f) {
+        Node[] nextTab; int sc;
+        if (tab != null && (f instanceof ForwardingNode) &&
+            (nextTab = ((ForwardingNode)f).nextTable) != null) {
+            int rs = resizeStamp(tab.length);
+            while (nextTab == nextTable && table == tab &&
+                   (sc = sizeCtl) < 0) {
+                if ((sc >>> RESIZE_STAMP_SHIFT) != rs || sc == rs + 1 ||
+                    sc == rs + MAX_RESIZERS || transferIndex <= 0)
+                    break;
+                if (U.compareAndSetInt(this, SIZECTL, sc, sc + 1)) {
+                    transfer(tab, nextTab);
+                    break;
+                }
+            }
+            return nextTab;
+        }
+        return table;
+    }
+
+    /**
+     * Moves and/or copies the nodes in each bin to new table.
+     */
+    private final void transfer(Node[] tab, Node[] nextTab) {
+        int n = tab.length, stride;
+        if ((stride = (NCPU > 1) ? (n >>> 3) / NCPU : n) < MIN_TRANSFER_STRIDE)
+            stride = MIN_TRANSFER_STRIDE; // subdivide range
+        if (nextTab == null) {            // initiating
+            try {
+                Node[] nt = new Node[n << 1];
+                nextTab = nt;
+            } catch (Throwable ex) {      // try to cope with OOME
+                sizeCtl = Integer.MAX_VALUE;
+                return;
+            }
+            nextTable = nextTab;
+            transferIndex = n;
+        }
+        int nextn = nextTab.length;
+        ForwardingNode fwd = new ForwardingNode(nextTab);
+        boolean advance = true;
+        boolean finishing = false; // to ensure sweep before committing nextTab
+        for (int i = 0, bound = 0;;) {
+            Node f; int fh;
+            while (advance) {
+                int nextIndex, nextBound;
+                if (--i >= bound || finishing)
+                    advance = false;
+                else if ((nextIndex = transferIndex) <= 0) {
+                    i = -1;
+                    advance = false;
+                }
+                else if (U.compareAndSetInt
+                         (this, TRANSFERINDEX, nextIndex,
+                          nextBound = (nextIndex > stride ?
+                                       nextIndex - stride : 0))) {
+                    bound = nextBound;
+                    i = nextIndex - 1;
+                    advance = false;
+                }
+            }
+            if (i < 0 || i >= n || i + n >= nextn) {
+                int sc;
+                if (finishing) {
+                    nextTable = null;
+                    table = nextTab;
+                    sizeCtl = (n << 1) - (n >>> 1);
+                    return;
+                }
+                if (U.compareAndSetInt(this, SIZECTL, sc = sizeCtl, sc - 1)) {
+                    if ((sc - 2) != resizeStamp(n) << RESIZE_STAMP_SHIFT)
+                        return;
+                    finishing = advance = true;
+                    i = n; // recheck before commit
+                }
+            }
+            else if ((f = tabAt(tab, i)) == null)
+                advance = casTabAt(tab, i, null, fwd);
+            else if ((fh = f.hash) == MOVED)
+                advance = true; // already processed
+            else {
+                synchronized (f) {
+                    if (tabAt(tab, i) == f && fh >= 0) {
+                        Node ln, hn;
+                        int runBit = fh & n;
+                        Node lastRun = f;
+                        for (Node p = f.next; p != null; p = p.next) {
+                            int b = p.hash & n;
+                            if (b != runBit) {
+                                runBit = b;
+                                lastRun = p;
+                            }
+                        }
+                        if (runBit == 0) {
+                            ln = lastRun;
+                            hn = null;
+                        }
+                        else {
+                            hn = lastRun;
+                            ln = null;
+                        }
+                        for (Node p = f; p != lastRun; p = p.next) {
+                            int ph = p.hash; long pk = p.key; long pv = p.val;
+                            if ((ph & n) == 0)
+                                ln = new Node(ph, pk, pv, ln);
+                            else
+                                hn = new Node(ph, pk, pv, hn);
+                        }
+                        setTabAt(nextTab, i, ln);
+                        setTabAt(nextTab, i + n, hn);
+                        setTabAt(tab, i, fwd);
+                        advance = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /* ----------------Table Traversal -------------- */
+
+    /**
+     * Records the table, its length, and current traversal index for a
+     * traverser that must process a region of a forwarded table before
+     * proceeding with current table.
+     */
+    static final class TableStack {
+        int length;
+        int index;
+        Node[] tab;
+        TableStack next;
+    }
+
+    /**
+     * Encapsulates traversal for methods such as containsValue; see
+     * ConcurrentHashMap.Traverser.
+     */
+    static class Traverser {
+        Node[] tab;        // current table; updated if resized
+        Node next;         // the next entry to use
+        TableStack stack, spare; // to save/restore on ForwardingNodes
+        int index;              // index of bin to use next
+        int baseIndex;          // current index of initial table
+        int baseLimit;          // index bound for initial table
+        final int baseSize;     // initial table size
+
+        Traverser(Node[] tab, int size, int index, int limit) {
+            this.tab = tab;
+            this.baseSize = size;
+            this.baseIndex = this.index = index;
+            this.baseLimit = limit;
+            this.next = null;
+        }
+
+        /**
+         * Advances if possible, returning next valid node, or null if none.
+         */
+        final Node advance() {
+            Node e;
+            if ((e = next) != null)
+                e = e.next;
+            for (;;) {
+                Node[] t; int i, n;  // must use locals in checks
+                if (e != null)
+                    return next = e;
+                if (baseIndex >= baseLimit || (t = tab) == null ||
+                    (n = t.length) <= (i = index) || i < 0)
+                    return next = null;
+                if ((e = tabAt(t, i)) != null && e.hash < 0) {
+                    if (e instanceof ForwardingNode) {
+                        tab = ((ForwardingNode)e).nextTable;
+                        e = null;
+                        pushState(t, i, n);
+                        continue;
+                    }
+                    else
+                        e = null;
+                }
+                if (stack != null)
+                    recoverState(n);
+                else if ((index = i + baseSize) >= n)
+                    index = ++baseIndex; // visit upper slots if present
+            }
+        }
+
+        /**
+         * Saves traversal state upon encountering a forwarding node.
+         */
+        private void pushState(Node[] t, int i, int n) {
+            TableStack s = spare;  // reuse if possible
+            if (s != null)
+                spare = s.next;
+            else
+                s = new TableStack();
+            s.tab = t;
+            s.length = n;
+            s.index = i;
+            s.next = stack;
+            stack = s;
+        }
+
+        /**
+         * Possibly pops traversal state.
+         *
+         * @param n length of current table
+         */
+        private void recoverState(int n) {
+            TableStack s; int len;
+            while ((s = stack) != null && (index += (len = s.length)) >= n) {
+                n = len;
+                index = s.index;
+                tab = s.tab;
+                s.tab = null;
+                TableStack next = s.next;
+                s.next = spare; // save for reuse
+                stack = next;
+                spare = s;
+            }
+            if (s == null && (index += baseSize) >= n)
+                index = ++baseIndex;
+        }
+    }
+
+    /* ---------------- Parallel bulk operations -------------- */
+
+    /**
+     * Computes initial batch value for bulk tasks; see
+     * ConcurrentHashMap.batchFor.
+     */
+    final int batchFor(long b) {
+        long n;
+        if (b == Long.MAX_VALUE || (n = count.sum()) <= 1L || n < b)
+            return 0;
+        int sp = ForkJoinPool.getCommonPoolParallelism() << 2; // slack of 4
+        return (b <= 0L || (n /= b) >= sp) ? sp : (int)n;
+    }
+
+    /**
+     * Performs the given action for each (key, value).
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param action the action
+     */
+    public void forEach(long parallelismThreshold, EntryConsumer action) {
+        if (action == null) throw new NullPointerException();
+        new ForEachMappingTask
+            (null, batchFor(parallelismThreshold), 0, 0, table,
+             action).invoke();
+    }
+
+    /**
+     * Performs the given action for each key.
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param action the action
+     */
+    public void forEachKey(long parallelismThreshold, LongConsumer action) {
+        if (action == null) throw new NullPointerException();
+        new ForEachLongTask
+            (null, batchFor(parallelismThreshold), 0, 0, table,
+             action, true).invoke();
+    }
+
+    /**
+     * Performs the given action for each value.
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param action the action
+     */
+    public void forEachValue(long parallelismThreshold, LongConsumer action) {
+        if (action == null) throw new NullPointerException();
+        new ForEachLongTask
+            (null, batchFor(parallelismThreshold), 0, 0, table,
+             action, false).invoke();
+    }
+
+    /**
+     * Returns the result of accumulating all values using the given
+     * reducer to combine values, and the given basis as an identity
+     * value.
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param basis the identity (initial default value) for the reduction
+     * @param reducer a commutative associative combining function
+     * @return the result of accumulating all values
+     */
+    public long reduceValues(long parallelismThreshold, long basis,
+                             LongBinaryOperator reducer) {
+        if (reducer == null) throw new NullPointerException();
+        return new ReduceValuesTask
+            (null, batchFor(parallelismThreshold), 0, 0, table,
+             null, basis, reducer).invoke();
+    }
+
+    /**
+     * Base class for bulk tasks. Repeats some fields and code from
+     * class Traverser, because we need to subclass CountedCompleter.
+     */
+    @SuppressWarnings("serial")
+    abstract static class BulkTask<R> extends CountedCompleter<R> {
+        Node[] tab;        // same as Traverser
+        Node next;
+        TableStack stack, spare;
+        int index;
+        int baseIndex;
+        int baseLimit;
+        final int baseSize;
+        int batch;              // split control
+
+        BulkTask(BulkTask<?> par, int b, int i, int f, Node[] t) {
+            super(par);
+            this.batch = b;
+            this.index = this.baseIndex = i;
+            if ((this.tab = t) == null)
+                this.baseSize = this.baseLimit = 0;
+            else if (par == null)
+                this.baseSize = this.baseLimit = t.length;
+            else {
+                this.baseLimit = f;
+                this.baseSize = par.baseSize;
+            }
+        }
+
+        /**
+         * Same as Traverser version.
+         */
+        final Node advance() {
+            Node e;
+            if ((e = next) != null)
+                e = e.next;
+            for (;;) {
+                Node[] t; int i, n;
+                if (e != null)
+                    return next = e;
+                if (baseIndex >= baseLimit || (t = tab) == null ||
+                    (n = t.length) <= (i = index) || i < 0)
+                    return next = null;
+                if ((e = tabAt(t, i)) != null && e.hash < 0) {
+                    if (e instanceof ForwardingNode) {
+                        tab = ((ForwardingNode)e).nextTable;
+                        e = null;
+                        pushState(t, i, n);
+                        continue;
+                    }
+                    else
+                        e = null;
+                }
+                if (stack != null)
+                    recoverState(n);
+                else if ((index = i + baseSize) >= n)
+                    index = ++baseIndex;
+            }
+        }
+
+        private void pushState(Node[] t, int i, int n) {
+            TableStack s = spare;
+            if (s != null)
+                spare = s.next;
+            else
+                s = new TableStack();
+            s.tab = t;
+            s.length = n;
+            s.index = i;
+            s.next = stack;
+            stack = s;
+        }
+
+        private void recoverState(int n) {
+            TableStack s; int len;
+            while ((s = stack) != null && (index += (len = s.length)) >= n) {
+                n = len;
+                index = s.index;
+                tab = s.tab;
+                s.tab = null;
+                TableStack next = s.next;
+                s.next = spare; // save for reuse
+                stack = next;
+                spare = s;
+            }
+            if (s == null && (index += baseSize) >= n)
+                index = ++baseIndex;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class ForEachMappingTask extends BulkTask<Void> {
+        final EntryConsumer action;
+        ForEachMappingTask
+            (BulkTask<?> p, int b, int i, int f, Node[] t,
+             EntryConsumer action) {
+            super(p, b, i, f, t);
+            this.action = action;
+        }
+        public final void compute() {
+            final EntryConsumer action;
+            if ((action = this.action) != null) {
+                for (int i = baseIndex, f, h; batch > 0 &&
+                         (h = ((f = baseLimit) + i) >>> 1) > i;) {
+                    addToPendingCount(1);
+                    new ForEachMappingTask
+                        (this, batch >>>= 1, baseLimit = h, f, tab,
+                         action).fork();
+                }
+                for (Node p; (p = advance()) != null; )
+                    action.accept(p.key, p.val);
+                propagateCompletion();
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class ForEachLongTask extends BulkTask<Void> {
+        final LongConsumer action;
+        final boolean keys;
+        ForEachLongTask
+            (BulkTask<?> p, int b, int i, int f, Node[] t,
+             LongConsumer action, boolean keys) {
+            super(p, b, i, f, t);
+            this.action = action;
+            this.keys = keys;
+        }
+        public final void compute() {
+            final LongConsumer action;
+            if ((action = this.action) != null) {
+                for (int i = baseIndex, f, h; batch > 0 &&
+                         (h = ((f = baseLimit) + i) >>> 1) > i;) {
+                    addToPendingCount(1);
+                    new ForEachLongTask
+                        (this, batch >>>= 1, baseLimit = h, f, tab,
+                         action, keys).fork();
+                }
+                for (Node p; (p = advance()) != null;)
+                    action.accept(keys ? p.key : p.val);
+                propagateCompletion();
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class ReduceValuesTask extends BulkTask<Long> {
+        final LongBinaryOperator reducer;
+        final long basis;
+        long result;
+        ReduceValuesTask rights, nextRight;
+        ReduceValuesTask
+            (BulkTask<?> p, int b, int i, int f, Node[] t,
+             ReduceValuesTask nextRight, long basis,
+             LongBinaryOperator reducer) {
+            super(p, b, i, f, t); this.nextRight = nextRight;
+            this.basis = basis; this.reducer = reducer;
+        }
+        public final Long getRawResult() { return result; }
+        public final void compute() {
+            final LongBinaryOperator reducer;
+            if ((reducer = this.reducer) != null) {
+                long r = this.basis;
+                for (int i = baseIndex, f, h; batch > 0 &&
+                         (h = ((f = baseLimit) + i) >>> 1) > i;) {
+                    addToPendingCount(1);
+                    (rights = new ReduceValuesTask
+                     (this, batch >>>= 1, baseLimit = h, f, tab,
+                      rights, r, reducer)).fork();
+                }
+                for (Node p; (p = advance()) != null; )
+                    r = reducer.applyAsLong(r, p.val);
+                result = r;
+                CountedCompleter<?> c;
+                for (c = firstComplete(); c != null; c = c.nextComplete()) {
+                    ReduceValuesTask t = (ReduceValuesTask)c, s = t.rights;
+                    while (s != null) {
+                        t.result = reducer.applyAsLong(t.result, s.result);
+                        s = t.rights = s.nextRight;
+                    }
+                }
+            }
+        }
+    }
+
+    // Unsafe mechanics
+    private static final Unsafe U = Unsafe.getUnsafe();
+    private static final long SIZECTL;
+    private static final long TRANSFERINDEX;
+    private static final int ABASE;
+    private static final int ASHIFT;
+
+    static {
+        SIZECTL = U.objectFieldOffset
+            (ConcurrentLongLongHashMap.class, "sizeCtl");
+        TRANSFERINDEX = U.objectFieldOffset
+            (ConcurrentLongLongHashMap.class, "transferIndex");
+
+        ABASE = U.arrayBaseOffset(Node[].class);
+        int scale = U.arrayIndexScale(Node[].class);
+        if ((scale & (scale - 1)) != 0)
+            throw new ExceptionInInitializerError("array index scale not a power of two");
+        ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+
+        // Eager class load observed to help JIT during startup
+        Class<?> ensureLoaded = ReservationNode.class;
+    }
+}
@@ -0,0 +1,617 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A hash map from {@code long} keys to fixed-size values, stored
+ * outside the Java heap in direct or file-mapped {@link ByteBuffer}s.
+ * Since entries are not Java objects, very large maps neither add to
+ * garbage collection work nor to heap occupancy. A map created with
+ * {@link #open open} is backed by a file, so its contents persist
+ * across runs.
+ *
+ * <p>All values have the size given on creation. Values are copied
+ * in from, and out to, caller-supplied buffers; methods {@link
+ * #getLong} and {@link #putLong} additionally access values of
+ * eight bytes directly.
+ *
+ * <p>Retrievals do not block, and may proceed concurrently with each
+ * other and with updates. Updates to keys in different segments of the
+ * map proceed in parallel, while updates within one segment are
+ * serialized. A retrieval returns a value as written by a completed
+ * update, never a partially written one.
+ *
+ * <p>The capacity of a map is fixed on creation. An attempt to add a
+ * key to a segment that has reached its share of the capacity fails
+ * with {@link IllegalStateException}.
+ *
+ * @since 11
+ */
+public final class ConcurrentOffHeapLongMap {
+
+    /*
+     * The map is split into a power of two number of segments, each a
+     * separate ByteBuffer (so that maps may exceed the 2GB limit of a
+     * single buffer), selected by the upper bits of a multiplicative
+     * hash of the key.  A segment is an open-addressing table with
+     * linear probing, laid out as
+     *
+     *   long version   seqlock word, odd while an update is in progress
+     *   long count     number of entries
+     *   slots          [long state][long key][value, padded to 8]
+     *
+     * where state is 0 for an empty slot.  Removal shifts later
+     * entries of the probe sequence back, so there are no tombstones.
+     *
+     * Writers synchronize on the Segment and bracket their changes by
+     * incrementing the version word twice.  Readers read the version
+     * with acquire semantics, probe and copy, and retry if the version
+     * was odd or has changed in between.  Reads of a slot that is
+     * concurrently updated may see torn data; the probe loop is
+     * bounded by the segment length and its result is discarded on
+     * retry.  Accesses to the version word use a byte buffer view
+     * VarHandle; slots are read and written using the buffer's
+     * (Unsafe-based) absolute accessors.
+     *
+     * A file-backed map starts with a header of HEADER_SIZE bytes,
+     * written in native byte order, followed by the segments.
+     */
+
+    private static final VarHandle VERSION =
+        MethodHandles.byteBufferViewVarHandle(long[].class,
+                                              ByteOrder.nativeOrder());
+
+    /** File magic, "OHLMAP" plus a format number */
+    private static final long MAGIC = 0x4f484c4d41500001L;
+    private static final int HEADER_SIZE = 64;
+
+    /** Offsets in segments and slots */
+    private static final int COUNT = 8;
+    private static final int SLOTS = 16;
+    private static final int KEY = 8;
+    private static final int VALUE = 16;
+
+    /** Minimum number of segments, for concurrency of updates */
+    private static final int MIN_SEGMENTS = 16;
+
+    /** Maximum number of segments */
+    private static final int MAX_SEGMENTS = 1 << 20;
+
+    /** Maximum number of bytes per segment */
+    private static final int MAX_SEGMENT_BYTES = 1 << 30;
+
+    static final class Segment {
+        final ByteBuffer buf;
+        Segment(ByteBuffer buf) { this.buf = buf; }
+    }
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final int slotMask;
+    private final int slotSize;
+    private final int valueSize;
+    private final int threshold;
+
+    private ConcurrentOffHeapLongMap(Segment[] segments, int slots,
+                                     int valueSize) {
+        this.segments = segments;
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(segments.length);
+        this.slotMask = slots - 1;
+        this.slotSize = slotSize(valueSize);
+        this.valueSize = valueSize;
+        this.threshold = slots - (slots >>> 3);
+    }
+
+    private static int slotSize(int valueSize) {
+        return VALUE + ((valueSize + 7) & ~7);
+    }
+
+    /**
+     * Returns the maximum number of slots per segment for the given
+     * value size.
+     */
+    private static long maxSlots(int valueSize) {
+        return Long.highestOneBit((MAX_SEGMENT_BYTES - SLOTS) /
+                                  slotSize(valueSize));
+    }
+
+    /**
+     * Computes the number of segments and slots per segment for the
+     * given capacity, returning {segments, slots}.
+     */
+    private static int[] geometry(long capacity, int valueSize) {
+        if (capacity <= 0L || valueSize <= 0 ||
+            valueSize > MAX_SEGMENT_BYTES >>> 4)
+            throw new IllegalArgumentException();
+        long maxSlots = maxSlots(valueSize);
+        long slots = capacity + (capacity >>> 1); // load factor 2/3
+        int nsegs = MIN_SEGMENTS;
+        while (slots / nsegs > maxSlots) {
+            if ((nsegs <<= 1) > MAX_SEGMENTS)
+                throw new IllegalArgumentException("Capacity too large");
+        }
+        long perSegment = Math.max(8L, (slots + nsegs - 1) / nsegs);
+        return new int[] { nsegs,
+                           (int)Math.min(maxSlots,
+                                         Long.highestOneBit(perSegment - 1) << 1) };
+    }
+
+    /**
+     * Creates a new, empty map stored in direct byte buffers.
+     *
+     * @param capacity the number of entries the map must be able to hold
+     * @param valueSize the size of each value, in bytes
+     * @return the new map
+     * @throws IllegalArgumentException if capacity or valueSize is not
+     *         positive, or the capacity is too large
+     */
+    public static ConcurrentOffHeapLongMap allocate(long capacity,
+                                                    int valueSize) {
+        int[] g = geometry(capacity, valueSize);
+        int bytes = SLOTS + g[1] * slotSize(valueSize);
+        Segment[] segments = new Segment[g[0]];
+        for (int i = 0; i < segments.length; i++)
+            segments[i] = new Segment(ByteBuffer.allocateDirect(bytes)
+                                      .order(ByteOrder.nativeOrder()));
+        return new ConcurrentOffHeapLongMap(segments, g[1], valueSize);
+    }
+
+    /**
+     * Opens a map stored in the given file, creating the file if it
+     * does not exist or is empty.  An existing map file must have been
+     * created with the same value size on a platform with the same
+     * byte order; its capacity is retained, and the given capacity is
+     * ignored.  Updates are written to the file by the operating
+     * system, or when {@link #force} is invoked.
+     *
+     * <p>A map file must not be used by more than one map at a time.
+     * If the process terminates during an update, the file may
+     * contain a corrupt segment.
+     *
+     * @param file the file
+     * @param capacity the number of entries the map must be able to
+     *        hold, if created
+     * @param valueSize the size of each value, in bytes
+     * @return the map
+     * @throws IllegalArgumentException if capacity or valueSize is not
+     *         positive, or the capacity is too large
+     * @throws IOException if an I/O error occurs, or the file is not
+     *         a compatible map file
+     */
+    public static ConcurrentOffHeapLongMap open(Path file, long capacity,
+                                                int valueSize)
+        throws IOException
+    {
+        int[] g = geometry(capacity, valueSize);
+        try (FileChannel fc = FileChannel.open(file,
+                                               StandardOpenOption.CREATE,
+                                               StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE)) {
+            boolean create = fc.size() == 0L;
+            ByteBuffer header = fc.map(FileChannel.MapMode.READ_WRITE, 0L,
+                                       HEADER_SIZE)
+                .order(ByteOrder.nativeOrder());
+            if (create) {
+                header.putLong(0, MAGIC);
+                header.putInt(8, valueSize);
+                header.putInt(12, g[0]);
+                header.putInt(16, g[1]);
+            } else {
+                if (header.getLong(0) != MAGIC)
+                    throw new IOException("Not a compatible map file: " + file);
+                if (header.getInt(8) != valueSize)
+                    throw new IOException("Value size mismatch: " + file);
+                g[0] = header.getInt(12);
+                g[1] = header.getInt(16);
+                // the geometry must be one that geometry() can return,
+                // so that segments fit in an int, and the file must be
+                // large enough to hold them all
+                if (Integer.bitCount(g[0]) != 1 || g[0] < MIN_SEGMENTS ||
+                    g[0] > MAX_SEGMENTS ||
+                    Integer.bitCount(g[1]) != 1 || g[1] < 8 ||
+                    g[1] > maxSlots(valueSize) ||
+                    fc.size() < HEADER_SIZE + (long)g[0] *
+                        (SLOTS + (long)g[1] * slotSize(valueSize)))
+                    throw new IOException("Corrupt map file: " + file);
+            }
+            int bytes = SLOTS + g[1] * slotSize(valueSize);
+            Segment[] segments = new Segment[g[0]];
+            for (int i = 0; i < segments.length; i++) {
+                ByteBuffer buf = fc.map(FileChannel.MapMode.READ_WRITE,
+                                        HEADER_SIZE + (long)i * bytes, bytes)
+                    .order(ByteOrder.nativeOrder());
+                buf.putLong(0, 0L); // reset seqlock
+                segments[i] = new Segment(buf);
+            }
+            return new ConcurrentOffHeapLongMap(segments, g[1], valueSize);
+        }
+    }
+
+    /**
+     * Returns the size of values, in bytes.
+     *
+     * @return the size of values
+     */
+    public int valueSize() {
+        return valueSize;
+    }
+
+    /**
+     * Returns the number of entries this map can hold if keys are
+     * distributed evenly across segments.
+     *
+     * @return the capacity
+     */
+    public long capacity() {
+        return (long)segments.length * threshold;
+    }
+
+    /**
+     * Returns the number of entries. The result is an estimate if
+     * there are concurrent updates.
+     *
+     * @return the number of entries
+     */
+    public long size() {
+        long n = 0L;
+        for (Segment s : segments)
+            n += s.buf.getLong(COUNT);
+        return n;
+    }
+
+    /**
+     * Returns {@code true} if the map contains an entry for the key.
+     *
+     * @param key the key
+     * @return {@code true} if the key is present
+     */
+    public boolean containsKey(long key) {
+        long h = hash(key);
+        ByteBuffer b = segmentFor(h).buf;
+        for (;;) {
+            long v = (long)VERSION.getAcquire(b, 0);
+            if ((v & 1L) == 0L) {
+                int off = probe(b, key, h);
+                VarHandle.loadLoadFence();
+                if ((long)VERSION.get(b, 0) == v)
+                    return off >= 0;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Copies the value for the key, if present, to the given buffer
+     * starting at its position, and advances the position by the value
+     * size.
+     *
+     * @param key the key
+     * @param dst the buffer receiving the value
+     * @return {@code true} if the key is present
+     * @throws BufferOverflowException if fewer than valueSize bytes
+     *         remain in dst
+     * @throws java.nio.ReadOnlyBufferException if dst is read-only
+     */
+    public boolean get(long key, ByteBuffer dst) {
+        if (dst.remaining() < valueSize)
+            throw new BufferOverflowException();
+        long h = hash(key);
+        ByteBuffer b = segmentFor(h).buf;
+        int pos = dst.position();
+        for (;;) {
+            long v = (long)VERSION.getAcquire(b, 0);
+            if ((v & 1L) == 0L) {
+                int off = probe(b, key, h);
+                if (off >= 0)
+                    copy(b, off + VALUE, dst, pos);
+                VarHandle.loadLoadFence();
+                if ((long)VERSION.get(b, 0) == v) {
+                    if (off < 0)
+                        return false;
+                    dst.position(pos + valueSize);
+                    return true;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Returns the first eight bytes of the value for the key, read in
+     * native byte order, or the given default if the key is absent.
+     *
+     * @param key the key
+     * @param defaultValue the value to return if the key is absent
+     * @return the value, or defaultValue if the key is absent
+     * @throws UnsupportedOperationException if the value size is
+     *         less than eight
+     */
+    public long getLong(long key, long defaultValue) {
+        if (valueSize < 8)
+            throw new UnsupportedOperationException();
+        long h = hash(key);
+        ByteBuffer b = segmentFor(h).buf;
+        for (;;) {
+            long v = (long)VERSION.getAcquire(b, 0);
+            if ((v & 1L) == 0L) {
+                int off = probe(b, key, h);
+                long x = (off >= 0) ? b.getLong(off + VALUE) : defaultValue;
+                VarHandle.loadLoadFence();
+                if ((long)VERSION.get(b, 0) == v)
+                    return x;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Associates the key with the value read from the given buffer
+     * starting at its position, and advances the position by the value
+     * size.
+     *
+     * @param key the key
+     * @param src the buffer holding the value
+     * @return {@code true} if the key was not present before
+     * @throws BufferUnderflowException if fewer than valueSize bytes
+     *         remain in src
+     * @throws IllegalStateException if the key is not present and its
+     *         segment is full
+     */
+    public boolean put(long key, ByteBuffer src) {
+        return update(key, src, 0L, false);
+    }
+
+    /**
+     * Associates the key with the value read from the given buffer if
+     * it is not already present. The position of the buffer is
+     * advanced by the value size only if the value was added.
+     *
+     * @param key the key
+     * @param src the buffer holding the value
+     * @return {@code true} if the key was not present before
+     * @throws BufferUnderflowException if fewer than valueSize bytes
+     *         remain in src
+     * @throws IllegalStateException if the key is not present and its
+     *         segment is full
+     */
+    public boolean putIfAbsent(long key, ByteBuffer src) {
+        return update(key, src, 0L, true);
+    }
+
+    /**
+     * Associates the key with a value whose first eight bytes are the
+     * given long, written in native byte order, and whose remaining
+     * bytes, if any, are zero for a new entry and unchanged otherwise.
+     *
+     * @param key the key
+     * @param value the value
+     * @return {@code true} if the key was not present before
+     * @throws UnsupportedOperationException if the value size is
+     *         less than eight
+     * @throws IllegalStateException if the key is not present and its
+     *         segment is full
+     */
+    public boolean putLong(long key, long value) {
+        if (valueSize < 8)
+            throw new UnsupportedOperationException();
+        return update(key, null, value, false);
+    }
+
+    /**
+     * Implementation of put methods: stores src's value if non-null,
+     * else x.
+     */
+    private boolean update(long key, ByteBuffer src, long x,
+                           boolean onlyIfAbsent) {
+        if (src != null && src.remaining() < valueSize)
+            throw new BufferUnderflowException();
+        long h = hash(key);
+        Segment s = segmentFor(h);
+        ByteBuffer b = s.buf;
+        synchronized (s) {
+            int off = probe(b, key, h);
+            boolean added = off < 0;
+            if (added) {
+                long n = b.getLong(COUNT);
+                if (n >= threshold)
+                    throw new IllegalStateException("Segment full");
+                off = ~off;
+                long v = beginWrite(b);
+                try {
+                    if (slotSize > VALUE + 8) // clear padding and rest
+                        for (int i = off + VALUE; i < off + slotSize; i += 8)
+                            b.putLong(i, 0L);
+                    b.putLong(off + KEY, key);
+                    store(b, off, src, x);
+                    b.putLong(off, 1L);
+                    b.putLong(COUNT, n + 1L);
+                } finally {
+                    endWrite(b, v);
+                }
+            } else if (!onlyIfAbsent) {
+                long v = beginWrite(b);
+                try {
+                    store(b, off, src, x);
+                } finally {
+                    endWrite(b, v);
+                }
+            } else
+                return false;
+            if (src != null)
+                src.position(src.position() + valueSize);
+            return added;
+        }
+    }
+
+    private void store(ByteBuffer b, int off, ByteBuffer src, long x) {
+        if (src != null)
+            copy(src, src.position(), b, off + VALUE);
+        else
+            b.putLong(off + VALUE, x);
+    }
+
+    /**
+     * Removes the entry for the key, if present.
+     *
+     * @param key the key
+     * @return {@code true} if the key was present
+     */
+    public boolean remove(long key) {
+        long h = hash(key);
+        Segment s = segmentFor(h);
+        ByteBuffer b = s.buf;
+        synchronized (s) {
+            int off = probe(b, key, h);
+            if (off < 0)
+                return false;
+            long v = beginWrite(b);
+            try {
+                // Shift back entries whose probe sequence passes the hole
+                int mask = slotMask, size = slotSize;
+                int i = (off - SLOTS) / size;
+                for (int j = (i + 1) & mask;; j = (j + 1) & mask) {
+                    int jo = SLOTS + j * size;
+                    if (b.getLong(jo) == 0L)
+                        break;
+                    int k = home(hash(b.getLong(jo + KEY)));
+                    if ((j > i) ? (k <= i || k > j) : (k <= i && k > j)) {
+                        int io = SLOTS + i * size;
+                        for (int p = 0; p < size; p += 8)
+                            b.putLong(io + p, b.getLong(jo + p));
+                        i = j;
+                    }
+                }
+                b.putLong(SLOTS + i * size, 0L);
+                b.putLong(COUNT, b.getLong(COUNT) - 1L);
+            } finally {
+                endWrite(b, v);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        for (Segment s : segments) {
+            ByteBuffer b = s.buf;
+            synchronized (s) {
+                long v = beginWrite(b);
+                try {
+                    for (int i = 0; i <= slotMask; i++)
+                        b.putLong(SLOTS + i * slotSize, 0L);
+                    b.putLong(COUNT, 0L);
+                } finally {
+                    endWrite(b, v);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forces updates to a file-backed map to be written to the storage
+     * device containing the file. Has no effect on other maps.
+     */
+    public void force() {
+        for (Segment s : segments) {
+            if (s.buf instanceof MappedByteBuffer) {
+                synchronized (s) {
+                    ((MappedByteBuffer)s.buf).force();
+                }
+            }
+        }
+    }
+
+    // Internals
+
+    private static long hash(long key) {
+        return key * 0x9e3779b97f4a7c15L;
+    }
+
+    private Segment segmentFor(long h) {
+        return segments[(int)(h >>> segmentShift)];
+    }
+
+    private int home(long h) {
+        return (int)(h ^ (h >>> 32)) & slotMask;
+    }
+
+    /**
+     * Returns the offset of the key's slot, or the complement of the
+     * offset of the empty slot ending its probe sequence.  The number
+     * of probes is bounded, so this terminates even when reading a
+     * segment under concurrent update, in which case the result is
+     * meaningless.
+     */
+    private int probe(ByteBuffer b, long key, long h) {
+        int mask = slotMask, size = slotSize;
+        for (int i = home(h), n = mask; n >= 0; i = (i + 1) & mask, n--) {
+            int off = SLOTS + i * size;
+            if (b.getLong(off) == 0L)
+                return ~off;
+            if (b.getLong(off + KEY) == key)
+                return off;
+        }
+        return ~SLOTS; // only when torn; no segment is ever full
+    }
+
+    /**
+     * Copies a value between buffers using absolute indices, eight
+     * bytes at a time if both buffers have the same byte order.
+     */
+    private void copy(ByteBuffer from, int i, ByteBuffer to, int j) {
+        int n = valueSize, k = 0;
+        if (from.order() == to.order())
+            for (; k + 8 <= n; k += 8)
+                to.putLong(j + k, from.getLong(i + k));
+        for (; k < n; k++)
+            to.put(j + k, from.get(i + k));
+    }
+
+    private static long beginWrite(ByteBuffer b) {
+        long v = (long)VERSION.get(b, 0);
+        VERSION.setOpaque(b, 0, v + 1L);
+        VarHandle.storeStoreFence();
+        return v;
+    }
+
+    private static void endWrite(ByteBuffer b, long v) {
+        VERSION.setRelease(b, 0, v + 2L);
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms collected by a {@link ThreadPoolExecutor}
+ * (including a {@link ScheduledThreadPoolExecutor}) or a
+ * {@link ForkJoinPool} while metrics are enabled for it.
+ *
+ * <p>Collection is enabled and disabled at any time with
+ * {@code setMetricsEnabled} on the executor, and the current instance,
+ * if any, is obtained with {@code getMetrics}.  While disabled, the cost
+ * to the executor is one volatile read per task.  While enabled,
+ * updates are made to {@link LongAdder}s and never take locks, and
+ * reads may be made at any time without interfering with the executor;
+ * the values read are not an atomic snapshot.
+ *
+ * <p>Durations are recorded in histograms with buckets of powers of two
+ * nanoseconds: element {@code 0} of a histogram counts durations of
+ * zero, and element {@code i > 0} counts durations {@code d} with
+ * {@code 2^(i-1) <= d < 2^i} nanoseconds.
+ *
+ * <p>Queue wait times are recorded for tasks submitted to a
+ * {@code ThreadPoolExecutor} with {@code submit}, {@code invokeAll} or
+ * {@code invokeAny}, measured from submission, and for tasks of a
+ * {@code ScheduledThreadPoolExecutor}, measured from the time the task
+ * was enabled.  They are not recorded for {@code Runnable}s passed
+ * directly to {@code execute}, nor for {@code ForkJoinPool} tasks.
+ * Steal counts are recorded only by {@code ForkJoinPool}.
+ *
+ * @since 11
+ */
+public final class ExecutorMetrics {
+
+    /** Number of buckets of each histogram. */
+    private static final int BUCKETS = 64;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder steals = new LongAdder();
+    private final LongAdder threadsStarted = new LongAdder();
+    private final LongAdder threadsExited = new LongAdder();
+    private final LongAdder[] queueWait = newHistogram();
+    private final LongAdder[] runTime = newHistogram();
+
+    ExecutorMetrics() {}
+
+    private static LongAdder[] newHistogram() {
+        LongAdder[] h = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            h[i] = new LongAdder();
+        return h;
+    }
+
+    private static void record(LongAdder[] h, long nanos) {
+        h[BUCKETS - Long.numberOfLeadingZeros(Math.max(nanos, 0L))]
+            .increment();
+    }
+
+    private static long[] snapshot(LongAdder[] h) {
+        long[] a = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            a[i] = h[i].sum();
+        return a;
+    }
+
+    // Recording, by the executors
+
+    void onSubmit() {
+        submitted.increment();
+    }
+
+    void onReject() {
+        rejected.increment();
+    }
+
+    void onSteal(int n) {
+        steals.add(n);
+    }
+
+    void onThreadStart() {
+        threadsStarted.increment();
+    }
+
+    void onThreadExit() {
+        threadsExited.increment();
+    }
+
+    void recordQueueWait(long nanos) {
+        record(queueWait, nanos);
+    }
+
+    void recordRun(long nanos, boolean abrupt) {
+        record(runTime, nanos);
+        (abrupt ? failed : completed).increment();
+    }
+
+    /**
+     * A FutureTask remembering when it was created, used by
+     * ThreadPoolExecutor.newTaskFor to measure queue wait times.
+     */
+    static final class TimedFutureTask<V> extends FutureTask<V> {
+        final long submitTime = System.nanoTime();
+
+        TimedFutureTask(Callable<V> callable) {
+            super(callable);
+        }
+
+        TimedFutureTask(Runnable runnable, V result) {
+            super(runnable, result);
+        }
+    }
+
+    // Reading
+
+    /**
+     * Returns the number of tasks submitted to the executor.  For a
+     * {@code ForkJoinPool}, subtasks forked by running tasks are not
+     * included.
+     *
+     * @return the number of tasks submitted
+     */
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * Returns the number of tasks rejected by the executor.
+     *
+     * @return the number of tasks rejected
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the number of top-level task executions that completed
+     * normally.
+     *
+     * @return the number of tasks completed
+     */
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * Returns the number of top-level task executions that completed
+     * abruptly by throwing an exception.
+     *
+     * @return the number of tasks failed
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Returns the number of tasks stolen by {@code ForkJoinPool} worker
+     * threads from queues other than their own.
+     *
+     * @return the number of steals
+     */
+    public long getStealCount() {
+        return steals.sum();
+    }
+
+    /**
+     * Returns the number of worker threads started.
+     *
+     * @return the number of threads started
+     */
+    public long getThreadStartCount() {
+        return threadsStarted.sum();
+    }
+
+    /**
+     * Returns the number of worker threads that exited.
+     *
+     * @return the number of threads exited
+     */
+    public long getThreadExitCount() {
+        return threadsExited.sum();
+    }
+
+    /**
+     * Returns the histogram of the times tasks waited to start
+     * executing, in buckets of powers of two nanoseconds.
+     *
+     * @return a new array of {@code 64} counts
+     */
+    public long[] getQueueWaitHistogram() {
+        return snapshot(queueWait);
+    }
+
+    /**
+     * Returns the histogram of the execution times of top-level tasks,
+     * in buckets of powers of two nanoseconds.
+     *
+     * @return a new array of {@code 64} counts
+     */
+    public long[] getRunTimeHistogram() {
+        return snapshot(runTime);
+    }
+
+    /**
+     * Returns a string identifying these metrics, and including the
+     * counts.
+     *
+     * @return a string identifying these metrics, and their counts
+     */
+    public String toString() {
+        return super.toString() +
+            "[Submitted = " + submitted.sum() +
+            ", rejected = " + rejected.sum() +
+            ", completed = " + completed.sum() +
+            ", failed = " + failed.sum() +
+            ", steals = " + steals.sum() +
+            ", threads started = " + threadsStarted.sum() +
+            ", threads exited = " + threadsExited.sum() + "]";
+    }
+}
@@ -1016,8 +1016,17 @@ public class ForkJoinPool extends AbstractExecutorService {
         final void topLevelExec(ForkJoinTask<?> t, WorkQueue q, int n) {
             if (t != null && q != null) { // hoist checks
                 int nstolen = 1;
+                ForkJoinPool p = pool;
+                ExecutorMetrics m = (p == null) ? null : p.metrics;
                 for (;;) {
-                    t.doExec();
+                    if (m == null)
+                        t.doExec();
+                    else {
+                        long start = System.nanoTime();
+                        int s = t.doExec();
+                        m.recordRun(System.nanoTime() - start,
+                                    ForkJoinTask.isExceptionalStatus(s));
+                    }
                     if (n-- < 0)
                         break;
                     else if ((t = nextLocalTask()) == null) {
@@ -1029,6 +1038,8 @@ public class ForkJoinPool extends AbstractExecutorService {
                 }
                 ForkJoinWorkerThread thread = owner;
                 nsteals += nstolen;
+                if (m != null)
+                    m.onSteal(nstolen);
                 source = 0;
                 if (thread != null)
                     thread.afterTopLevelExec();
@@ -1307,6 +1318,7 @@ public class ForkJoinPool extends AbstractExecutorService {
     final ForkJoinWorkerThreadFactory factory;
     final UncaughtExceptionHandler ueh;  // per-worker UEH
     final Predicate<? super ForkJoinPool> saturate;
+    volatile ExecutorMetrics metrics;    // null unless enabled
 
     @jdk.internal.vm.annotation.Contended("fjpctl") // segregate
     volatile long ctl;                   // main pool control
@@ -1371,6 +1383,9 @@ public class ForkJoinPool extends AbstractExecutorService {
         int idbits = mode & FIFO;
         String prefix = workerNamePrefix;
         WorkQueue w = new WorkQueue(this, wt);
+        ExecutorMetrics em = metrics;
+        if (em != null)
+            em.onThreadStart();
         if (prefix != null) {
             synchronized (prefix) {
                 WorkQueue[] ws = workQueues; int n;
@@ -1429,6 +1444,9 @@ public class ForkJoinPool extends AbstractExecutorService {
         WorkQueue w = null;
         int phase = 0;
         if (wt != null && (w = wt.workQueue) != null) {
+            ExecutorMetrics m = metrics;
+            if (m != null)
+                m.onThreadExit();
             Object lock = workerNamePrefix;
             int wid = w.id;
             long ns = (long)w.nsteals & 0xffffffffL;
@@ -1876,8 +1894,12 @@ public class ForkJoinPool extends AbstractExecutorService {
             WorkQueue q;
             int md = mode, n;
             WorkQueue[] ws = workQueues;
-            if ((md & SHUTDOWN) != 0 || ws == null || (n = ws.length) <= 0)
+            if ((md & SHUTDOWN) != 0 || ws == null || (n = ws.length) <= 0) {
+                ExecutorMetrics m = metrics;
+                if (m != null)
+                    m.onReject();
                 throw new RejectedExecutionException();
+            }
             else if ((q = ws[(n - 1) & r & SQMASK]) == null) { // add queue
                 int qid = (r | QUIET) & ~(FIFO | OWNED);
                 Object lock = workerNamePrefix;
@@ -1910,9 +1932,11 @@ public class ForkJoinPool extends AbstractExecutorService {
      * Pushes a possibly-external submission.
      */
     private <T> ForkJoinTask<T> externalSubmit(ForkJoinTask<T> task) {
-        Thread t; ForkJoinWorkerThread w; WorkQueue q;
+        Thread t; ForkJoinWorkerThread w; WorkQueue q; ExecutorMetrics m;
         if (task == null)
             throw new NullPointerException();
+        if ((m = metrics) != null)
+            m.onSubmit();
         if (((t = Thread.currentThread()) instanceof ForkJoinWorkerThread) &&
             (w = (ForkJoinWorkerThread)t).pool == this &&
             (q = w.workQueue) != null)
@@ -2657,6 +2681,43 @@ public class ForkJoinPool extends AbstractExecutorService {
         }
     }
 
+    /**
+     * Enables or disables the collection of {@link ExecutorMetrics}
+     * for this pool.  Enabling collection while it is disabled starts
+     * a new, empty {@code ExecutorMetrics}; enabling it while already
+     * enabled has no effect.  While disabled, collection costs nothing
+     * beyond a volatile read per top-level task.
+     *
+     * @param enabled {@code true} to collect metrics, else {@code false}
+     * @throws SecurityException if a security manager exists and
+     *         the caller is not permitted to modify threads
+     *         because it does not hold {@link
+     *         java.lang.RuntimePermission}{@code ("modifyThread")}
+     * @see #getMetrics
+     * @since 11
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        checkPermission();
+        if (!enabled)
+            metrics = null;
+        else if (metrics == null)
+            metrics = new ExecutorMetrics();
+    }
+
+    /**
+     * Returns the metrics being collected for this pool, or
+     * {@code null} if collection is disabled.  Unlike
+     * {@link #getStealCount} and {@link #getQueuedTaskCount}, the
+     * returned counts are read without scanning the work queues.
+     *
+     * @return the metrics, or {@code null} if disabled
+     * @see #setMetricsEnabled
+     * @since 11
+     */
+    public ExecutorMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Returns an estimate of the total number of tasks stolen from
      * one thread's work queue by another. The reported value
@@ -0,0 +1,761 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link ThreadPoolExecutor} that can additionally schedule
+ * commands to run after a given delay, or to execute periodically,
+ * keeping delayed tasks in a hierarchical hashed timer wheel.
+ *
+ * <p>A {@link ScheduledThreadPoolExecutor} keeps its delayed tasks in
+ * a binary heap guarded by a single lock, so that scheduling and
+ * cancelling a task take logarithmic time under that lock.  This class
+ * instead hands delayed tasks through non-blocking queues to a single
+ * ticker thread, which owns the timer wheel.  Scheduling and cancelling
+ * a task take constant time and never block, and cancelled tasks are
+ * removed from the wheel at the next tick.  This makes the class
+ * suitable for large numbers of timeouts that are usually cancelled
+ * before they expire, such as request deadlines and idle timers.
+ *
+ * <p>The price is precision.  The ticker thread advances its clock in
+ * ticks of a fixed duration, given when the executor is constructed
+ * (by default one millisecond).  A delayed task is enabled at the first
+ * tick at or after its trigger time, so it may commence up to one tick
+ * later than it would with a {@code ScheduledThreadPoolExecutor}.
+ * Delayed tasks execute no sooner than they are enabled.  Tasks enabled
+ * at the same tick are not ordered with respect to each other.
+ *
+ * <p>Enabled tasks are executed by a fixed-size pool of
+ * {@code corePoolSize} threads taking tasks from an unbounded queue,
+ * as for {@code ScheduledThreadPoolExecutor}.  The ticker thread is
+ * created by the thread factory in addition to the pool threads, when
+ * the first delayed task is scheduled, and terminates on shutdown.
+ *
+ * <p>Successive executions of a periodic task scheduled via
+ * {@link #scheduleAtFixedRate scheduleAtFixedRate} or
+ * {@link #scheduleWithFixedDelay scheduleWithFixedDelay}
+ * do not overlap. While different executions may be performed by
+ * different threads, the effects of prior executions
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * those of subsequent ones.
+ *
+ * <p>On {@link #shutdown}, periodic tasks and delayed tasks that are
+ * not yet enabled are cancelled; tasks that are already enabled are
+ * still executed.  The list returned by {@link #shutdownNow} contains
+ * only enabled tasks that never commenced execution.
+ *
+ * @since 11
+ */
+public class HashedWheelScheduledExecutor
+        extends ThreadPoolExecutor
+        implements ScheduledExecutorService {
+
+    /*
+     * Overview:
+     *
+     * The wheel has LEVELS levels of WHEEL_SIZE slots each.  Slot s of
+     * level L holds the tasks due within the WHEEL_SIZE^L ticks starting
+     * at a tick whose digit L (in base WHEEL_SIZE) is s, as in the
+     * hierarchical timing wheels of Varghese and Lauck.  Each slot is a
+     * doubly-linked list threaded through the tasks themselves, so that
+     * a task is inserted and unlinked in constant time.  A task is put
+     * in the lowest level whose span covers its distance from the
+     * current tick.  Whenever digit L of the current tick wraps to
+     * zero, the slot of level L + 1 for the new tick is emptied and its
+     * tasks re-inserted ("cascaded") into lower levels, so that each
+     * task is moved at most LEVELS times.  Tasks beyond the span of the
+     * top level are kept there and re-inserted until they come in range.
+     *
+     * Only the ticker thread touches the wheel.  Other threads pass
+     * newly scheduled tasks in queue "added", and cancelled tasks in
+     * queue "removed", both drained by the ticker once per tick.
+     * While the wheel is empty the ticker parks without a timeout, and
+     * submitters unpark it ("waiting" guards the unpark, Dekker style);
+     * otherwise it parks until the next tick.
+     *
+     * Enabled tasks are added to the work queue of the underlying
+     * ThreadPoolExecutor, with the same shutdown recheck as
+     * ScheduledThreadPoolExecutor.reExecutePeriodic.
+     */
+
+    /** Number of bits of the tick consumed by each level of the wheel. */
+    private static final int WHEEL_BITS = 6;
+
+    /** Number of slots in each level of the wheel. */
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    /** Mask for a slot index within a level. */
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /** Number of levels, spanning 2^36 ticks. */
+    private static final int LEVELS = 6;
+
+    /** Default tick duration. */
+    private static final long DEFAULT_TICK_MILLIS = 1L;
+
+    /**
+     * The default keep-alive time for pool threads, as for
+     * ScheduledThreadPoolExecutor.
+     */
+    private static final long DEFAULT_KEEPALIVE_MILLIS = 10L;
+
+    /**
+     * Sequence number to break scheduling ties in compareTo.
+     */
+    private static final AtomicLong sequencer = new AtomicLong();
+
+    /** Tick duration in nanoseconds. */
+    private final long tickNanos;
+
+    /** The nanoTime-based time of tick zero. */
+    private final long origin;
+
+    /** Newly scheduled tasks, to be inserted in the wheel by the ticker. */
+    private final ConcurrentLinkedQueue<WheelTask<?>> added =
+        new ConcurrentLinkedQueue<>();
+
+    /** Cancelled tasks, to be unlinked from the wheel by the ticker. */
+    private final ConcurrentLinkedQueue<WheelTask<?>> removed =
+        new ConcurrentLinkedQueue<>();
+
+    /** Lock held while starting the ticker thread. */
+    private final ReentrantLock tickerLock = new ReentrantLock();
+
+    /** The ticker thread, or null if not yet started. */
+    private volatile Thread ticker;
+
+    /** True while the ticker is parked without a timeout. */
+    private volatile boolean waiting;
+
+    /*
+     * The wheel.  The fields below are accessed only by the ticker.
+     */
+
+    /** Slot list heads, indexed by level and slot. */
+    private final WheelTask<?>[][] wheel = new WheelTask<?>[LEVELS][WHEEL_SIZE];
+
+    /** The last tick processed. */
+    private long tick;
+
+    /** Number of tasks in the wheel. */
+    private int size;
+
+    private class WheelTask<V>
+            extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+        /** Sequence number to break ties */
+        private final long sequenceNumber;
+
+        /** The nanoTime-based time when the task is enabled to execute. */
+        private volatile long time;
+
+        /**
+         * Period for repeating tasks, in nanoseconds.
+         * A positive value indicates fixed-rate execution.
+         * A negative value indicates fixed-delay execution.
+         * A value of 0 indicates a non-repeating (one-shot) task.
+         */
+        private final long period;
+
+        /*
+         * Wheel linkage, accessed only by the ticker.
+         */
+
+        /** Level and slot of the list holding the task. */
+        int level, slot;
+
+        /** True if the task is linked in the wheel. */
+        boolean linked;
+
+        /** Neighbours in the slot list. */
+        WheelTask<?> prev, next;
+
+        /**
+         * Creates a delayed or periodic action with given nanoTime-based
+         * initial trigger time and period.
+         */
+        WheelTask(Runnable r, V result, long triggerTime, long period) {
+            super(r, result);
+            this.time = triggerTime;
+            this.period = period;
+            this.sequenceNumber = sequencer.getAndIncrement();
+        }
+
+        /**
+         * Creates a one-shot action with given nanoTime-based trigger time.
+         */
+        WheelTask(Callable<V> callable, long triggerTime) {
+            super(callable);
+            this.time = triggerTime;
+            this.period = 0;
+            this.sequenceNumber = sequencer.getAndIncrement();
+        }
+
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - System.nanoTime(), NANOSECONDS);
+        }
+
+        public int compareTo(Delayed other) {
+            if (other == this) // compare zero if same object
+                return 0;
+            if (other instanceof WheelTask) {
+                WheelTask<?> x = (WheelTask<?>)other;
+                long diff = time - x.time;
+                if (diff < 0)
+                    return -1;
+                else if (diff > 0)
+                    return 1;
+                else if (sequenceNumber < x.sequenceNumber)
+                    return -1;
+                else
+                    return 1;
+            }
+            long diff = getDelay(NANOSECONDS) - other.getDelay(NANOSECONDS);
+            return (diff < 0) ? -1 : (diff > 0) ? 1 : 0;
+        }
+
+        /**
+         * Returns {@code true} if this is a periodic (not a one-shot) action.
+         *
+         * @return {@code true} if periodic
+         */
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        /**
+         * Sets the next time to run for a periodic task.
+         */
+        private void setNextRunTime() {
+            long p = period;
+            if (p > 0)
+                time += p;
+            else
+                time = triggerTime(-p);
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && !isShutdown())
+                removed.offer(this);
+            return cancelled;
+        }
+
+        /**
+         * Overrides FutureTask version so as to reschedule if periodic.
+         */
+        public void run() {
+            if (!isPeriodic())
+                super.run();
+            else if (isShutdown())
+                cancel(false);
+            else if (super.runAndReset()) {
+                setNextRunTime();
+                if (time - System.nanoTime() <= 0)
+                    enable(this);
+                else if (!add(this))
+                    cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Creates a new {@code HashedWheelScheduledExecutor} with the
+     * given core pool size and a tick duration of one millisecond.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @throws IllegalArgumentException if {@code corePoolSize < 0}
+     */
+    public HashedWheelScheduledExecutor(int corePoolSize) {
+        this(corePoolSize, DEFAULT_TICK_MILLIS, MILLISECONDS,
+             Executors.defaultThreadFactory(), new AbortPolicy());
+    }
+
+    /**
+     * Creates a new {@code HashedWheelScheduledExecutor} with the
+     * given core pool size and tick duration.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @param tickDuration the time between ticks of the timer wheel
+     * @param unit the time unit of the {@code tickDuration} argument
+     * @throws IllegalArgumentException if {@code corePoolSize < 0}
+     *         or {@code tickDuration <= 0}
+     * @throws NullPointerException if {@code unit} is null
+     */
+    public HashedWheelScheduledExecutor(int corePoolSize,
+                                        long tickDuration,
+                                        TimeUnit unit) {
+        this(corePoolSize, tickDuration, unit,
+             Executors.defaultThreadFactory(), new AbortPolicy());
+    }
+
+    /**
+     * Creates a new {@code HashedWheelScheduledExecutor} with the
+     * given initial parameters.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @param tickDuration the time between ticks of the timer wheel
+     * @param unit the time unit of the {@code tickDuration} argument
+     * @param threadFactory the factory to use when the executor
+     *        creates a new thread, including the ticker thread
+     * @param handler the handler to use when execution is blocked
+     *        because the executor has been shut down
+     * @throws IllegalArgumentException if {@code corePoolSize < 0}
+     *         or {@code tickDuration <= 0}
+     * @throws NullPointerException if {@code unit}, {@code threadFactory}
+     *         or {@code handler} is null
+     */
+    public HashedWheelScheduledExecutor(int corePoolSize,
+                                        long tickDuration,
+                                        TimeUnit unit,
+                                        ThreadFactory threadFactory,
+                                        RejectedExecutionHandler handler) {
+        super(corePoolSize, Integer.MAX_VALUE,
+              DEFAULT_KEEPALIVE_MILLIS, MILLISECONDS,
+              new LinkedBlockingQueue<Runnable>(), threadFactory, handler);
+        if (tickDuration <= 0L)
+            throw new IllegalArgumentException();
+        this.tickNanos = Math.max(1L, unit.toNanos(tickDuration));
+        this.origin = System.nanoTime();
+    }
+
+    /**
+     * Returns the duration of a tick of the timer wheel.
+     *
+     * @param unit the desired time unit
+     * @return the tick duration
+     */
+    public long getTickDuration(TimeUnit unit) {
+        return unit.convert(tickNanos, NANOSECONDS);
+    }
+
+    /**
+     * Returns the nanoTime-based trigger time of a delayed action.
+     */
+    private long triggerTime(long delay, TimeUnit unit) {
+        return triggerTime(unit.toNanos((delay < 0) ? 0 : delay));
+    }
+
+    /**
+     * Returns the nanoTime-based trigger time of a delayed action.
+     */
+    private long triggerTime(long delay) {
+        return System.nanoTime() + Math.min(delay, Long.MAX_VALUE >> 1);
+    }
+
+    /**
+     * Main execution method for delayed or periodic tasks.  If the
+     * executor is shut down, rejects the task.  Otherwise enables the
+     * task if it is due, or else hands it to the ticker.
+     */
+    private void delayedExecute(WheelTask<?> task) {
+        if (isShutdown())
+            reject(task);
+        else if (task.time - System.nanoTime() <= 0)
+            enable(task);
+        else if (!add(task))
+            reject(task);
+    }
+
+    /**
+     * Adds an enabled task to the work queue and starts a thread, if
+     * necessary, to run it.  Cancels the task instead if the executor
+     * is shut down, unless a worker has already taken it.
+     */
+    private void enable(WheelTask<?> task) {
+        if (!isShutdown()) {
+            super.getQueue().add(task);
+            if (!isShutdown() || !remove(task)) {
+                ensurePrestart();
+                return;
+            }
+        }
+        task.cancel(false);
+    }
+
+    /**
+     * Hands a delayed task to the ticker, starting the ticker if
+     * necessary.
+     *
+     * @return false if the ticker could not be started
+     */
+    private boolean add(WheelTask<?> task) {
+        Thread t = ticker;
+        if (t == null && (t = startTicker()) == null)
+            return false;
+        added.offer(task);
+        if (isShutdown())
+            task.cancel(false);
+        else if (waiting)
+            LockSupport.unpark(t);
+        return true;
+    }
+
+    /**
+     * Starts the ticker thread unless already started or shut down.
+     *
+     * @return the ticker thread, or null if it could not be started
+     */
+    private Thread startTicker() {
+        final ReentrantLock tickerLock = this.tickerLock;
+        tickerLock.lock();
+        try {
+            Thread t = ticker;
+            if (t == null && !isShutdown() &&
+                (t = getThreadFactory().newThread(new Ticker())) != null) {
+                t.start();
+                ticker = t;
+            }
+            return t;
+        } finally {
+            tickerLock.unlock();
+        }
+    }
+
+    /**
+     * Unparks the ticker, if started.
+     */
+    private void wakeTicker() {
+        Thread t = ticker;
+        if (t != null)
+            LockSupport.unpark(t);
+    }
+
+    /**
+     * Wakes the ticker so that it cancels the tasks in the wheel and
+     * exits.  Invoked within super.shutdown.
+     */
+    @Override void onShutdown() {
+        wakeTicker();
+    }
+
+    /**
+     * The ticker thread: advances the wheel at each tick and enables
+     * the tasks that are due.
+     */
+    private final class Ticker implements Runnable {
+        public void run() {
+            try {
+                while (!isShutdown()) {
+                    long target = (System.nanoTime() - origin) / tickNanos;
+                    if (size == 0 && target > tick)
+                        tick = target;      // nothing to cascade or expire
+                    for (WheelTask<?> t; (t = added.poll()) != null; ) {
+                        if (!t.isCancelled())
+                            insert(t);
+                    }
+                    for (WheelTask<?> t; (t = removed.poll()) != null; ) {
+                        if (t.linked)
+                            unlink(t);
+                    }
+                    while (tick < target && !isShutdown())
+                        advance();
+                    Thread.interrupted();   // clear, so as to park
+                    if (size == 0) {
+                        waiting = true;
+                        if (added.isEmpty() && !isShutdown())
+                            LockSupport.park(this);
+                        waiting = false;
+                    } else {
+                        long d = origin + (tick + 1) * tickNanos - System.nanoTime();
+                        if (d > 0L)
+                            LockSupport.parkNanos(this, d);
+                    }
+                }
+            } finally {
+                cancelAll();
+            }
+        }
+    }
+
+    /**
+     * Inserts a task in the wheel, or enables it if it is due.
+     */
+    private void insert(WheelTask<?> t) {
+        long when = ((t.time - origin) + (tickNanos - 1)) / tickNanos;
+        long delta = when - tick;
+        if (delta <= 0L) {
+            enable(t);
+            return;
+        }
+        int level = Math.min((63 - Long.numberOfLeadingZeros(delta)) / WHEEL_BITS,
+                             LEVELS - 1);
+        int slot = (int)(when >>> (level * WHEEL_BITS)) & WHEEL_MASK;
+        WheelTask<?>[] w = wheel[level];
+        WheelTask<?> head = w[slot];
+        t.level = level;
+        t.slot = slot;
+        t.prev = null;
+        t.next = head;
+        if (head != null)
+            head.prev = t;
+        w[slot] = t;
+        t.linked = true;
+        size++;
+    }
+
+    /**
+     * Unlinks a task from its slot list.
+     */
+    private void unlink(WheelTask<?> t) {
+        WheelTask<?> p = t.prev, n = t.next;
+        if (p == null)
+            wheel[t.level][t.slot] = n;
+        else
+            p.next = n;
+        if (n != null)
+            n.prev = p;
+        t.prev = t.next = null;
+        t.linked = false;
+        size--;
+    }
+
+    /**
+     * Advances the wheel by one tick, cascading higher levels whose
+     * digit wraps, and enables the tasks due at the new tick.
+     */
+    private void advance() {
+        long now = ++tick;
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = level * WHEEL_BITS;
+            if ((now & ((1L << shift) - 1)) != 0L)
+                break;
+            reinsert(level, (int)(now >>> shift) & WHEEL_MASK);
+        }
+        reinsert(0, (int)now & WHEEL_MASK);
+    }
+
+    /**
+     * Empties a slot and re-inserts its live tasks, which enables
+     * those that are due.
+     */
+    private void reinsert(int level, int slot) {
+        WheelTask<?>[] w = wheel[level];
+        WheelTask<?> t = w[slot];
+        w[slot] = null;
+        while (t != null) {
+            WheelTask<?> n = t.next;
+            t.prev = t.next = null;
+            t.linked = false;
+            size--;
+            if (!t.isCancelled())
+                insert(t);
+            t = n;
+        }
+    }
+
+    /**
+     * Cancels the tasks in the wheel and the tasks not yet inserted.
+     * Invoked by the ticker when exiting.
+     */
+    private void cancelAll() {
+        for (WheelTask<?>[] w : wheel) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                for (WheelTask<?> t = w[i], n; t != null; t = n) {
+                    n = t.next;
+                    t.prev = t.next = null;
+                    t.linked = false;
+                    t.cancel(false);
+                }
+                w[i] = null;
+            }
+        }
+        size = 0;
+        for (WheelTask<?> t; (t = added.poll()) != null; )
+            t.cancel(false);
+        removed.clear();
+    }
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     */
+    public ScheduledFuture<?> schedule(Runnable command,
+                                       long delay,
+                                       TimeUnit unit) {
+        if (command == null || unit == null)
+            throw new NullPointerException();
+        WheelTask<Void> t =
+            new WheelTask<Void>(command, null, triggerTime(delay, unit), 0L);
+        delayedExecute(t);
+        return t;
+    }
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     */
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable,
+                                           long delay,
+                                           TimeUnit unit) {
+        if (callable == null || unit == null)
+            throw new NullPointerException();
+        WheelTask<V> t = new WheelTask<V>(callable, triggerTime(delay, unit));
+        delayedExecute(t);
+        return t;
+    }
+
+    /**
+     * Submits a periodic action that becomes enabled first after the
+     * given initial delay, and subsequently with the given period;
+     * that is, executions will commence after
+     * {@code initialDelay}, then {@code initialDelay + period}, then
+     * {@code initialDelay + 2 * period}, and so on, each rounded up
+     * to a tick.
+     *
+     * <p>The sequence of task executions continues indefinitely until
+     * the task is cancelled, the executor is shut down, or an execution
+     * of the task throws an exception.
+     *
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     * @throws IllegalArgumentException   {@inheritDoc}
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command,
+                                                  long initialDelay,
+                                                  long period,
+                                                  TimeUnit unit) {
+        if (command == null || unit == null)
+            throw new NullPointerException();
+        if (period <= 0L)
+            throw new IllegalArgumentException();
+        WheelTask<Void> t =
+            new WheelTask<Void>(command, null,
+                                triggerTime(initialDelay, unit),
+                                unit.toNanos(period));
+        delayedExecute(t);
+        return t;
+    }
+
+    /**
+     * Submits a periodic action that becomes enabled first after the
+     * given initial delay, and subsequently with the given delay
+     * between the termination of one execution and the commencement of
+     * the next, rounded up to a tick.
+     *
+     * <p>The sequence of task executions continues indefinitely until
+     * the task is cancelled, the executor is shut down, or an execution
+     * of the task throws an exception.
+     *
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     * @throws IllegalArgumentException   {@inheritDoc}
+     */
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command,
+                                                     long initialDelay,
+                                                     long delay,
+                                                     TimeUnit unit) {
+        if (command == null || unit == null)
+            throw new NullPointerException();
+        if (delay <= 0L)
+            throw new IllegalArgumentException();
+        WheelTask<Void> t =
+            new WheelTask<Void>(command, null,
+                                triggerTime(initialDelay, unit),
+                                -unit.toNanos(delay));
+        delayedExecute(t);
+        return t;
+    }
+
+    /**
+     * Executes {@code command} with zero required delay.
+     * This has effect equivalent to
+     * {@link #schedule(Runnable,long,TimeUnit) schedule(command, 0, anyUnit)}.
+     *
+     * @throws RejectedExecutionException at discretion of
+     *         {@code RejectedExecutionHandler}, if the task
+     *         cannot be accepted for execution because the
+     *         executor has been shut down
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public void execute(Runnable command) {
+        schedule(command, 0, NANOSECONDS);
+    }
+
+    // Override AbstractExecutorService methods
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     */
+    public Future<?> submit(Runnable task) {
+        return schedule(task, 0, NANOSECONDS);
+    }
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     */
+    public <T> Future<T> submit(Runnable task, T result) {
+        return schedule(Executors.callable(task, result), 0, NANOSECONDS);
+    }
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return schedule(task, 0, NANOSECONDS);
+    }
+
+    /**
+     * Attempts to stop all actively executing tasks, halts the
+     * processing of waiting tasks, and returns a list of the enabled
+     * tasks that were awaiting execution.  Delayed tasks that were not
+     * yet enabled are cancelled and not included in the list.
+     *
+     * @return list of enabled tasks that never commenced execution.
+     *         Each element of this list is a {@link ScheduledFuture}.
+     * @throws SecurityException {@inheritDoc}
+     */
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = super.shutdownNow();
+        wakeTicker();
+        return tasks;
+    }
+
+    /**
+     * Returns the task queue used by this executor.  The queue holds
+     * only tasks that are enabled; delayed tasks are kept in the timer
+     * wheel and are not included.
+     *
+     * @return the task queue
+     */
+    public BlockingQueue<Runnable> getQueue() {
+        return super.getQueue();
+    }
+}
@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded {@linkplain BlockingQueue blocking queue} backed by a
+ * ring buffer, for use by many producer threads and a single consumer
+ * thread. Elements are ordered FIFO with respect to the order in which
+ * producers claim their slots.
+ *
+ * <p>Unlike {@link ArrayBlockingQueue}, which guards both ends with
+ * one lock, and {@link LinkedBlockingQueue}, which allocates a node
+ * per element, producers claim slots by a compare-and-set of a shared
+ * tail sequence and publish into them with a release write, and the
+ * consumer advances a head sequence that only it writes. The head and
+ * tail are kept on separate cache lines. {@link #drainTo(Collection,
+ * int) drainTo} takes any number of elements with a single update of
+ * the head.
+ *
+ * <p><b>Only one thread at a time may remove elements.</b> The methods
+ * {@code poll}, {@code take}, {@code remove()}, {@code peek}, {@code
+ * element}, {@code drainTo} and {@code clear} are consumer methods;
+ * calling them from more than one thread concurrently leads to
+ * unspecified results. All other methods may be called by any thread.
+ * Removal of arbitrary elements, including through iterators, is not
+ * supported.
+ *
+ * <p>Blocked threads wait according to the {@link WaitStrategy} given
+ * at construction: spinning and yielding give the lowest hand-off
+ * latency at the cost of a busy processor, while parking releases the
+ * processor after a short spin. Under {@link WaitStrategy#PARK}
+ * producers check for a parked consumer after each insertion and the
+ * consumer checks for parked producers after each removal.
+ *
+ * <p>The iterator is weakly consistent and read-only. This queue does
+ * not permit {@code null} elements.
+ *
+ * @since 11
+ * @param <E> the type of elements held in this queue
+ */
+public class MpscArrayBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E> {
+
+    /**
+     * How a thread waits for the queue to become non-empty or
+     * non-full.
+     *
+     * @since 11
+     */
+    public enum WaitStrategy {
+        /**
+         * Busy-waits with {@link Thread#onSpinWait}. Suitable only
+         * when waiting threads have processors to themselves.
+         */
+        SPIN,
+        /** Spins briefly, then calls {@link Thread#yield} between checks. */
+        YIELD,
+        /** Spins briefly, then parks until signalled. */
+        PARK
+    }
+
+    /** The number of spins before yielding or parking. */
+    static final int SPINS = 1 << 7;
+
+    /** The ring buffer; its length is a power of two. */
+    final Object[] items;
+
+    /** items.length - 1 */
+    final int mask;
+
+    /** The maximum number of elements. */
+    final int capacity;
+
+    final WaitStrategy waitStrategy;
+
+    /** The sequence of the next slot to claim. Updated via CAS. */
+    @jdk.internal.vm.annotation.Contended("producer")
+    volatile long tail;
+
+    /** Producers' cached lower bound of head, to avoid reading it. */
+    @jdk.internal.vm.annotation.Contended("producer")
+    volatile long headLimit;
+
+    /** The sequence of the next element to take. Written only by the consumer. */
+    @jdk.internal.vm.annotation.Contended("consumer")
+    volatile long head;
+
+    /** The consumer parked in take or poll, if any. */
+    @jdk.internal.vm.annotation.Contended("consumer")
+    volatile Thread consumer;
+
+    /** The number of producers awaiting notFull; modified under lock. */
+    volatile int parkedProducers;
+
+    /** Lock guarding notFull, used only by parking producers. */
+    final ReentrantLock lock = new ReentrantLock();
+
+    /** Condition for waiting puts under WaitStrategy.PARK. */
+    final Condition notFull = lock.newCondition();
+
+    /**
+     * Creates an {@code MpscArrayBlockingQueue} with the given
+     * (fixed) capacity whose blocked threads park.
+     *
+     * @param capacity the capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1} or
+     *         {@code capacity > 2^30}
+     */
+    public MpscArrayBlockingQueue(int capacity) {
+        this(capacity, WaitStrategy.PARK);
+    }
+
+    /**
+     * Creates an {@code MpscArrayBlockingQueue} with the given
+     * (fixed) capacity and wait strategy.
+     *
+     * @param capacity the capacity of this queue
+     * @param waitStrategy how blocked threads wait
+     * @throws IllegalArgumentException if {@code capacity < 1} or
+     *         {@code capacity > 2^30}
+     * @throws NullPointerException if {@code waitStrategy} is null
+     */
+    public MpscArrayBlockingQueue(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1 || capacity > (1 << 30))
+            throw new IllegalArgumentException();
+        this.waitStrategy = Objects.requireNonNull(waitStrategy);
+        int n = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.items = new Object[n];
+        this.mask = n - 1;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's
+     * capacity, returning {@code true} upon success and {@code false}
+     * if this queue is full.
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        long t;
+        do {
+            t = tail;
+            if (t - headLimit >= capacity) {
+                long h = head;
+                if (t - h >= capacity)
+                    return false;
+                headLimit = h;
+            }
+        } while (!TAIL.compareAndSet(this, t, t + 1));
+        AA.setRelease(items, (int)t & mask, e);
+        if (waitStrategy == WaitStrategy.PARK) {
+            Thread w = consumer;
+            if (w != null)
+                LockSupport.unpark(w);
+        }
+        return true;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * for space to become available if the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public void put(E e) throws InterruptedException {
+        Objects.requireNonNull(e);
+        while (!offer(e))
+            awaitNotFull(false, 0L);
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * up to the specified wait time for space to become available if
+     * the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        Objects.requireNonNull(e);
+        long nanos = unit.toNanos(timeout);
+        while (!offer(e)) {
+            if (nanos <= 0L)
+                return false;
+            nanos = awaitNotFull(true, nanos);
+        }
+        return true;
+    }
+
+    public E poll() {
+        final Object[] items = this.items;
+        long h = head;
+        int i = (int)h & mask;
+        Object e;
+        if ((e = AA.getAcquire(items, i)) == null) {
+            if (h == tail)
+                return null;
+            // A producer has claimed the slot but not yet filled it
+            for (int spins = 0; (e = AA.getAcquire(items, i)) == null; ) {
+                if (++spins < SPINS)
+                    Thread.onSpinWait();
+                else
+                    Thread.yield();
+            }
+        }
+        items[i] = null;
+        advanceHead(h + 1, false);
+        @SuppressWarnings("unchecked") E x = (E) e;
+        return x;
+    }
+
+    public E take() throws InterruptedException {
+        E e;
+        while ((e = poll()) == null)
+            awaitNotEmpty(false, 0L);
+        return e;
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        E e;
+        while ((e = poll()) == null) {
+            if (nanos <= 0L)
+                return null;
+            nanos = awaitNotEmpty(true, nanos);
+        }
+        return e;
+    }
+
+    public E peek() {
+        @SuppressWarnings("unchecked")
+        E e = (E) AA.getAcquire(items, (int)head & mask);
+        return e;
+    }
+
+    /**
+     * Publishes a new head and, under WaitStrategy.PARK, wakes
+     * producers waiting for space. The fence pairs with the write of
+     * parkedProducers before a producer's last check of head.
+     */
+    private void advanceHead(long h, boolean all) {
+        HEAD.setRelease(this, h);
+        if (waitStrategy == WaitStrategy.PARK) {
+            VarHandle.fullFence();
+            if (parkedProducers != 0) {
+                final ReentrantLock lock = this.lock;
+                lock.lock();
+                try {
+                    if (all)
+                        notFull.signalAll();
+                    else
+                        notFull.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until the queue appears non-empty, the thread is
+     * interrupted, or the timeout elapses.
+     *
+     * @return the remaining nanoseconds, or zero if timed out
+     */
+    private long awaitNotEmpty(boolean timed, long nanos)
+        throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        for (int spins = 0;; ++spins) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (head != tail)
+                return nanos;
+            if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                return 0L;
+            if (spins < SPINS || waitStrategy == WaitStrategy.SPIN)
+                Thread.onSpinWait();
+            else if (waitStrategy == WaitStrategy.YIELD)
+                Thread.yield();
+            else {
+                // Pairs with the producer's CAS of tail before it reads consumer
+                consumer = Thread.currentThread();
+                if (head == tail) {
+                    if (timed)
+                        LockSupport.parkNanos(this, nanos);
+                    else
+                        LockSupport.park(this);
+                }
+                consumer = null;
+            }
+        }
+    }
+
+    /**
+     * Waits until the queue appears non-full, the thread is
+     * interrupted, or the timeout elapses.
+     *
+     * @return the remaining nanoseconds, or zero if timed out
+     */
+    private long awaitNotFull(boolean timed, long nanos)
+        throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        for (int spins = 0;; ++spins) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (tail - head < capacity)
+                return nanos;
+            if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                return 0L;
+            if (spins < SPINS || waitStrategy == WaitStrategy.SPIN)
+                Thread.onSpinWait();
+            else if (waitStrategy == WaitStrategy.YIELD)
+                Thread.yield();
+            else {
+                final ReentrantLock lock = this.lock;
+                lock.lockInterruptibly();
+                try {
+                    parkedProducers++;
+                    try {
+                        if (tail - head >= capacity) {
+                            if (timed)
+                                notFull.awaitNanos(nanos);
+                            else
+                                notFull.await();
+                        }
+                    } finally {
+                        parkedProducers--;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements in this queue. Under concurrent
+     * insertion this may include elements whose slots have been
+     * claimed but not yet filled.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        long h = head, t = tail;
+        return (int)Math.max(0L, Math.min(t - h, capacity));
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * Returns the number of additional elements that this queue can
+     * ideally (in the absence of memory or resource constraints)
+     * accept without blocking.
+     */
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        Objects.requireNonNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        final Object[] items = this.items;
+        final int mask = this.mask;
+        final long h = head;
+        int n = 0;
+        try {
+            while (n < maxElements) {
+                int i = (int)(h + n) & mask;
+                @SuppressWarnings("unchecked")
+                E e = (E) AA.getAcquire(items, i);
+                if (e == null)
+                    break;
+                c.add(e);
+                items[i] = null;
+                n++;
+            }
+            return n;
+        } finally {
+            // Restore invariants even if c.add() threw
+            if (n > 0)
+                advanceHead(h + n, true);
+        }
+    }
+
+    /**
+     * Returns an array containing the elements in this queue, in
+     * proper sequence. Elements inserted or removed concurrently may
+     * or may not be included.
+     *
+     * @return an array containing the elements in this queue
+     */
+    public Object[] toArray() {
+        final Object[] items = this.items;
+        long h = head, t = tail;
+        Object[] a = new Object[(int)Math.max(0L, Math.min(t - h, capacity))];
+        int n = 0;
+        for (long s = h; s < t && n < a.length; ++s) {
+            Object e = AA.getAcquire(items, (int)s & mask);
+            if (e != null)
+                a[n++] = e;
+        }
+        return (n == a.length) ? a : Arrays.copyOf(a, n);
+    }
+
+    /**
+     * Returns a weakly consistent iterator over a snapshot of the
+     * elements in this queue. The iterator does not support removal.
+     *
+     * @return an iterator over the elements in this queue
+     */
+    @SuppressWarnings("unchecked")
+    public Iterator<E> iterator() {
+        return (Iterator<E>) Collections.unmodifiableList(
+            Arrays.asList(toArray())).iterator();
+    }
+
+    // VarHandle mechanics
+    private static final VarHandle TAIL;
+    private static final VarHandle HEAD;
+    private static final VarHandle AA
+        = MethodHandles.arrayElementVarHandle(Object[].class);
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            TAIL = l.findVarHandle(MpscArrayBlockingQueue.class, "tail", long.class);
+            HEAD = l.findVarHandle(MpscArrayBlockingQueue.class, "head", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
@@ -352,6 +352,9 @@ public class ScheduledThreadPoolExecutor
      * @param task the task
      */
     private void delayedExecute(java.util.concurrent.RunnableScheduledFuture<?> task) {
+        ExecutorMetrics m = metrics;
+        if (m != null)
+            m.onSubmit();
         if (isShutdown())
             reject(task);
         else {
@@ -380,6 +383,16 @@ public class ScheduledThreadPoolExecutor
         task.cancel(false);
     }
 
+    /**
+     * Records the time since a scheduled task was enabled.
+     */
+    @Override void recordQueueWait(ExecutorMetrics m, Runnable task, long now) {
+        if (task instanceof ScheduledFutureTask)
+            m.recordQueueWait(now - ((ScheduledFutureTask<?>)task).time);
+        else
+            super.recordQueueWait(m, task, now);
+    }
+
     /**
      * Cancels and clears the queue of all tasks that should not be run
      * due to shutdown policy.  Invoked within super.shutdown.
@@ -39,6 +39,7 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
@@ -186,7 +187,12 @@ public class SubmissionPublisher<T> implements Publisher<T>,
      * built-in locks works well in the most typical case in which
      * only one thread submits items. We extend this idea in
      * submission methods by detecting single-ownership to reduce
-     * producer-consumer synchronization strength.
+     * producer-consumer synchronization strength. The batch methods
+     * (submitAll and offerAll) hold the lock across all items, fill
+     * each buffer with as many items as fit before starting its
+     * consumer at most once, and only then fall back to per-item
+     * waiting or dropping for saturated buffers. This amortizes
+     * locking and signalling when many producers contend.
      */
 
     /** The largest possible power of two array size. */
@@ -608,6 +614,184 @@ public class SubmissionPublisher<T> implements Publisher<T>,
         return doOffer(item, nanos, onDrop);
     }
 
+    /**
+     * Common implementation for all three forms of submitAll and
+     * offerAll. Acts as submitAll if nanos == Long.MAX_VALUE, else
+     * offerAll.
+     */
+    private int doOfferAll(List<? extends T> items, long nanos,
+                           BiPredicate<Subscriber<? super T>, ? super T> onDrop) {
+        Object[] xs = items.toArray();
+        for (Object x : xs) {
+            if (x == null) throw new NullPointerException();
+        }
+        int lag = 0;
+        boolean complete, unowned;
+        synchronized (this) {
+            Thread t = Thread.currentThread(), o;
+            BufferedSubscription<T> b = clients;
+            if ((unowned = ((o = owner) != t)) && o != null)
+                owner = null;                     // disable bias
+            if (b == null)
+                complete = closed;
+            else {
+                complete = false;
+                boolean cleanMe = false;
+                BufferedSubscription<T> retries = null, rtail = null, next;
+                do {
+                    next = b.next;
+                    int stat = b.offerAll(xs, 0, unowned);
+                    if (stat < 0)                 // closed
+                        cleanMe = true;           // remove later
+                    else {
+                        if (stat < xs.length) {   // saturated; retry rest
+                            b.retryIndex = stat;
+                            b.nextRetry = null;
+                            if (rtail == null)
+                                retries = b;
+                            else
+                                rtail.nextRetry = b;
+                            rtail = b;
+                        }
+                        int k = b.estimateLag();
+                        if (k > lag)
+                            lag = k;
+                    }
+                } while ((b = next) != null);
+
+                if (retries != null || cleanMe)
+                    lag = retryOfferAll(xs, nanos, onDrop, retries, lag,
+                                        cleanMe);
+            }
+        }
+        if (complete)
+            throw new IllegalStateException("Closed");
+        else
+            return lag;
+    }
+
+    /**
+     * Version of retryOffer for the remaining items of a batch,
+     * starting at each buffer's retryIndex.
+     */
+    private int retryOfferAll(Object[] xs, long nanos,
+                              BiPredicate<Subscriber<? super T>, ? super T> onDrop,
+                              BufferedSubscription<T> retries, int lag,
+                              boolean cleanMe) {
+        for (BufferedSubscription<T> r = retries; r != null;) {
+            BufferedSubscription<T> nextRetry = r.nextRetry;
+            r.nextRetry = null;
+            for (int i = r.retryIndex; i < xs.length;) {
+                if (nanos > 0L)
+                    r.awaitSpace(nanos);
+                int stat = r.offerAll(xs, i, true);
+                if (stat == 0) {                  // still saturated
+                    @SuppressWarnings("unchecked") T item = (T) xs[i++];
+                    if (onDrop != null && onDrop.test(r.subscriber, item))
+                        stat = r.retryOffer(item);
+                    if (stat == 0)
+                        lag = (lag >= 0) ? -1 : lag - 1;
+                }
+                else if (stat > 0)
+                    i += stat;
+                if (stat < 0) {
+                    cleanMe = true;
+                    break;
+                }
+            }
+            int k;
+            if (lag >= 0 && (k = r.estimateLag()) > lag)
+                lag = k;
+            r = nextRetry;
+        }
+        if (cleanMe)
+            cleanAndCount();
+        return lag;
+    }
+
+    /**
+     * Publishes the given items, in order, to each current
+     * subscriber, blocking uninterruptibly while resources for any
+     * subscriber are unavailable. The effect is the same as calling
+     * {@link #submit} for each item, except that no other items
+     * are published in between, and each subscriber's consumer task
+     * is signalled once per batch rather than once per item. This
+     * method returns an estimate of the maximum lag among all current
+     * subscribers, which is zero if there are no subscribers.
+     *
+     * <p>If the Executor for this publisher throws a
+     * RejectedExecutionException (or any other RuntimeException or
+     * Error) when attempting to asynchronously notify subscribers,
+     * then this exception is rethrown, in which case not all
+     * subscribers will have been issued all items.
+     *
+     * @param items the (non-null) items to publish
+     * @return the estimated maximum lag among subscribers
+     * @throws IllegalStateException if closed
+     * @throws NullPointerException if items or any item is null
+     * @throws RejectedExecutionException if thrown by Executor
+     * @since 11
+     */
+    public int submitAll(List<? extends T> items) {
+        return doOfferAll(items, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Publishes the given items, in order and if possible, to each
+     * current subscriber, as if by calling {@link #offer(Object,
+     * BiPredicate)} for each item, except that no other items are
+     * published in between, and each subscriber's consumer task is
+     * signalled once per batch rather than once per item. The drop
+     * handler is invoked separately for each dropped item.
+     *
+     * @param items the (non-null) items to publish
+     * @param onDrop if non-null, the handler invoked upon a drop to a
+     * subscriber, with arguments of the subscriber and item; if it
+     * returns true, an offer is re-attempted (once)
+     * @return if negative, the (negative) number of drops; otherwise
+     * an estimate of maximum lag
+     * @throws IllegalStateException if closed
+     * @throws NullPointerException if items or any item is null
+     * @throws RejectedExecutionException if thrown by Executor
+     * @since 11
+     */
+    public int offerAll(List<? extends T> items,
+                        BiPredicate<Subscriber<? super T>, ? super T> onDrop) {
+        return doOfferAll(items, 0L, onDrop);
+    }
+
+    /**
+     * Publishes the given items, in order and if possible, to each
+     * current subscriber, as if by calling {@link #offer(Object, long,
+     * TimeUnit, BiPredicate)} for each item, except that no other
+     * items are published in between, and each subscriber's consumer
+     * task is signalled once per batch rather than once per item. The
+     * timeout applies to each wait for resources, and the drop
+     * handler is invoked separately for each dropped item.
+     *
+     * @param items the (non-null) items to publish
+     * @param timeout how long to wait for resources for any subscriber
+     * before giving up, in units of {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     * {@code timeout} parameter
+     * @param onDrop if non-null, the handler invoked upon a drop to a
+     * subscriber, with arguments of the subscriber and item; if it
+     * returns true, an offer is re-attempted (once)
+     * @return if negative, the (negative) number of drops; otherwise
+     * an estimate of maximum lag
+     * @throws IllegalStateException if closed
+     * @throws NullPointerException if items or any item is null
+     * @throws RejectedExecutionException if thrown by Executor
+     * @since 11
+     */
+    public int offerAll(List<? extends T> items, long timeout, TimeUnit unit,
+                        BiPredicate<Subscriber<? super T>, ? super T> onDrop) {
+        long nanos = unit.toNanos(timeout);
+        // distinguishes from untimed (only wrt interrupt policy)
+        if (nanos == Long.MAX_VALUE) --nanos;
+        return doOfferAll(items, nanos, onDrop);
+    }
+
     /**
      * Unless already closed, issues {@link
      * Subscriber#onComplete() onComplete} signals to current
@@ -886,6 +1070,33 @@ public class SubmissionPublisher<T> implements Publisher<T>,
         return status;
     }
 
+    /**
+     * A {@link Subscriber} that may receive several items in one call
+     * when subscribed to a SubmissionPublisher. Each call to {@link
+     * #onNextBatch} delivers, in order, items that would otherwise be
+     * delivered by successive calls to {@link Subscriber#onNext
+     * onNext}, and counts against demand as that many calls would.
+     * Batches are bounded by outstanding demand and by a fraction of
+     * the subscription's buffer capacity.
+     *
+     * @param <T> the subscribed item type
+     * @since 11
+     */
+    public interface BatchSubscriber<T> extends Subscriber<T> {
+        /**
+         * Method invoked with one or more items of the Subscription.
+         * The list is not modifiable, and is not used by the publisher
+         * after this method returns. The default implementation
+         * invokes {@link Subscriber#onNext onNext} for each item.
+         *
+         * @param items the items
+         */
+        default void onNextBatch(List<T> items) {
+            for (T item : items)
+                onNext(item);
+        }
+    }
+
     /** Subscriber for method consume */
     static final class ConsumerSubscriber<T> implements Subscriber<T> {
         final java.util.concurrent.CompletableFuture<Void> status;
@@ -1023,6 +1234,7 @@ public class SubmissionPublisher<T> implements Publisher<T>,
         Throwable pendingError;            // holds until onError issued
         BufferedSubscription<T> next;      // used only by publisher
         BufferedSubscription<T> nextRetry; // used only by publisher
+        int retryIndex;                    // used only by publisher
 
         @jdk.internal.vm.annotation.Contended("c") // segregate
         volatile long demand;              // # unfilled requests
@@ -1118,6 +1330,38 @@ public class SubmissionPublisher<T> implements Publisher<T>,
             return startOnOffer(stat);
         }
 
+        /**
+         * Tries to add items xs[i], xs[i+1], ... until saturated, and
+         * start consumer task if necessary once for all of them.
+         * @return negative if closed, else the number of items added
+         */
+        final int offerAll(Object[] xs, int i, boolean unowned) {
+            Object[] a;
+            int k = 0, n = xs.length - i, cap;
+            if ((a = array) != null && (cap = a.length) > 0) {
+                for (int t = tail; k < n; ++k, ++t) {
+                    @SuppressWarnings("unchecked") T item = (T) xs[i + k];
+                    int j = t & (cap - 1), size = t + 1 - head;
+                    boolean added;
+                    if (size >= cap && cap < maxCapacity) { // resize
+                        if ((added = growAndOffer(item, a, t)) &&
+                            (a = array) != null)
+                            cap = a.length;
+                    }
+                    else if (size >= cap || unowned)  // need volatile CAS
+                        added = QA.compareAndSet(a, j, null, item);
+                    else {                            // can use release mode
+                        QA.setRelease(a, j, item);
+                        added = true;
+                    }
+                    if (!added)
+                        break;
+                    tail = t + 1;
+                }
+            }
+            return startOnOffer(k);
+        }
+
         /**
          * Tries to expand buffer and add item, returning true on
          * success. Currently fails only if out of memory.
@@ -1294,6 +1538,8 @@ public class SubmissionPublisher<T> implements Publisher<T>,
             if ((a = array) != null && (cap = a.length) > 0) {
                 int m = cap - 1, b = (m >>> 3) + 1; // min(1, cap/8)
                 int n = (d < (long)b) ? (int)d : b;
+                if (n > 1 && s instanceof BatchSubscriber)
+                    return takeBatch(s, a, m, n, h);
                 for (; k < n; ++h, ++k) {
                     Object x = QA.getAndSet(a, h & m, null);
                     if (waiting != 0)
@@ -1307,6 +1553,39 @@ public class SubmissionPublisher<T> implements Publisher<T>,
             return k;
         }
 
+        /**
+         * Version of takeItems for BatchSubscribers, issuing at most n
+         * available items in one call.
+         */
+        final int takeBatch(Subscriber<? super T> s, Object[] a, int m,
+                            int n, int h) {
+            Object[] xs = new Object[n];
+            int k = 0;
+            for (; k < n; ++h, ++k) {
+                Object x = QA.getAndSet(a, h & m, null);
+                if (waiting != 0)
+                    signalWaiter();
+                if (x == null)
+                    break;
+                xs[k] = x;
+            }
+            if (k > 0)
+                consumeBatch(s, (k < n) ? Arrays.copyOf(xs, k) : xs);
+            return k;
+        }
+
+        final void consumeBatch(Subscriber<? super T> s, Object[] xs) {
+            try {
+                @SuppressWarnings("unchecked")
+                BatchSubscriber<T> bs = (BatchSubscriber<T>) s;
+                @SuppressWarnings("unchecked")
+                List<T> items = (List<T>) Arrays.asList(xs);
+                bs.onNextBatch(Collections.unmodifiableList(items));
+            } catch (Throwable ex) {
+                handleOnNext(s, ex);
+            }
+        }
+
         final boolean consumeNext(Subscriber<? super T> s, Object x) {
             try {
                 @SuppressWarnings("unchecked") T y = (T) x;
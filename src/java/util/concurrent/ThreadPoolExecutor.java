@@ -530,6 +530,11 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      */
     private volatile boolean allowCoreThreadTimeOut;
 
+    /**
+     * Metrics being collected, or null if disabled.
+     */
+    volatile ExecutorMetrics metrics;
+
     /**
      * Core pool size is the minimum number of workers to keep alive
      * (and not allow to time out etc) unless allowCoreThreadTimeOut
@@ -812,6 +817,33 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
 
     private static final boolean ONLY_ONE = true;
 
+    /**
+     * Returns a {@code RunnableFuture} for the given runnable and
+     * default value, which records its submission time if metrics
+     * are enabled.
+     *
+     * @since 11
+     */
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return (metrics == null)
+            ? super.newTaskFor(runnable, value)
+            : new ExecutorMetrics.TimedFutureTask<T>(runnable, value);
+    }
+
+    /**
+     * Returns a {@code RunnableFuture} for the given callable task,
+     * which records its submission time if metrics are enabled.
+     *
+     * @since 11
+     */
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return (metrics == null)
+            ? super.newTaskFor(callable)
+            : new ExecutorMetrics.TimedFutureTask<T>(callable);
+    }
+
     /*
      * Misc utilities, most of which are also exported to
      * ScheduledThreadPoolExecutor
@@ -822,9 +854,27 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * Package-protected for use by ScheduledThreadPoolExecutor.
      */
     final void reject(Runnable command) {
+        ExecutorMetrics m = metrics;
+        if (m != null)
+            m.onReject();
         handler.rejectedExecution(command, this);
     }
 
+    /**
+     * Records the time the given task waited before being run, if
+     * known.  Overridden by ScheduledThreadPoolExecutor to measure
+     * from the time its tasks are enabled.
+     *
+     * @param m the metrics
+     * @param task the task about to run
+     * @param now the current nanoTime
+     */
+    void recordQueueWait(ExecutorMetrics m, Runnable task, long now) {
+        if (task instanceof ExecutorMetrics.TimedFutureTask)
+            m.recordQueueWait(
+                now - ((ExecutorMetrics.TimedFutureTask<?>)task).submitTime);
+    }
+
     /**
      * Performs any further cleanup following run state transition on
      * invocation of shutdown.  A no-op here, but used by
@@ -982,6 +1032,10 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         if (completedAbruptly) // If abrupt, then workerCount wasn't adjusted
             decrementWorkerCount();
 
+        ExecutorMetrics m = metrics;
+        if (m != null)
+            m.onThreadExit();
+
         final ReentrantLock mainLock = this.mainLock;
         mainLock.lock();
         try {
@@ -1110,6 +1164,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         w.firstTask = null;
         w.unlock(); // allow interrupts
         boolean completedAbruptly = true;
+        ExecutorMetrics m = metrics;
+        if (m != null)
+            m.onThreadStart();
         try {
             while (task != null || (task = getTask()) != null) {
                 w.lock();
@@ -1124,10 +1181,17 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     wt.interrupt();
                 try {
                     beforeExecute(wt, task);
+                    long start = 0L;
+                    if ((m = metrics) != null)
+                        recordQueueWait(m, task, start = System.nanoTime());
                     try {
                         task.run();
+                        if (m != null)
+                            m.recordRun(System.nanoTime() - start, false);
                         afterExecute(task, null);
                     } catch (Throwable ex) {
+                        if (m != null)
+                            m.recordRun(System.nanoTime() - start, true);
                         afterExecute(task, ex);
                         throw ex;
                     }
@@ -1318,6 +1382,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
     public void execute(Runnable command) {
         if (command == null)
             throw new NullPointerException();
+        ExecutorMetrics m = metrics;
+        if (m != null)
+            m.onSubmit();
         /*
          * Proceed in 3 steps:
          *
@@ -1886,6 +1953,38 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         }
     }
 
+    /**
+     * Enables or disables the collection of {@link ExecutorMetrics}
+     * for this pool.  Enabling collection while it is disabled starts
+     * a new, empty {@code ExecutorMetrics}; enabling it while already
+     * enabled has no effect.  While disabled, collection costs nothing
+     * beyond a volatile read per task.
+     *
+     * @param enabled {@code true} to collect metrics, else {@code false}
+     * @see #getMetrics
+     * @since 11
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        if (!enabled)
+            metrics = null;
+        else if (metrics == null)
+            metrics = new ExecutorMetrics();
+    }
+
+    /**
+     * Returns the metrics being collected for this pool, or
+     * {@code null} if collection is disabled.  Unlike
+     * {@link #getActiveCount} and {@link #getCompletedTaskCount}, the
+     * returned counts are read without locking the pool.
+     *
+     * @return the metrics, or {@code null} if disabled
+     * @see #setMetricsEnabled
+     * @since 11
+     */
+    public ExecutorMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Returns a string identifying this pool, as well as its state,
      * including indications of run state and estimated worker and
@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link ThreadPoolExecutor} whose tasks are held in a striped,
+ * non-blocking work queue from which idle workers steal, instead of in
+ * a single queue shared by all threads.
+ *
+ * <p>With a conventional work queue such as {@link LinkedBlockingQueue},
+ * every submission and every task taken by a worker goes through the
+ * same queue, which limits throughput with many threads and short
+ * tasks.  The queue used by this class is split into a number of
+ * lanes, at least as many as there are available processors.  A task
+ * submitted by a thread is added to the lane selected by that thread's
+ * hash, and a worker first takes tasks from its own lane, then steals
+ * from the others.  Tasks submitted by a task running in the pool are
+ * therefore usually run by the same worker.  Lanes are non-blocking,
+ * and workers only contend on a shared structure when they have no
+ * work and must wait for more.
+ *
+ * <p>Otherwise this class behaves as a {@code ThreadPoolExecutor}
+ * with an unbounded queue: the pool creates up to {@code corePoolSize}
+ * threads, keeps excess threads for {@code keepAliveTime}, and calls
+ * {@link #beforeExecute beforeExecute}, {@link #afterExecute afterExecute},
+ * {@link #terminated terminated} and the {@link RejectedExecutionHandler}
+ * in the same way.  As with any unbounded queue, a submission never
+ * finds the queue full, so the pool does not grow beyond
+ * {@code corePoolSize} threads on its own; a larger
+ * {@code maximumPoolSize} takes effect only through
+ * {@link #setCorePoolSize setCorePoolSize}.  The only lock taken is
+ * the one the superclass takes when threads are added or removed.
+ *
+ * <p>Tasks in the same lane are taken in first-in-first-out order, but
+ * there is no ordering among tasks in different lanes.  The
+ * {@link #getQueue queue} supports monitoring, {@code remove} and
+ * {@code purge}; its {@code size} traverses all lanes.
+ *
+ * @since 11
+ */
+public class WorkStealingThreadPoolExecutor extends ThreadPoolExecutor {
+
+    /**
+     * Creates a new {@code WorkStealingThreadPoolExecutor} with the
+     * given initial parameters, the
+     * {@linkplain Executors#defaultThreadFactory default thread factory}
+     * and the {@linkplain ThreadPoolExecutor.AbortPolicy
+     * default rejected execution handler}.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @param maximumPoolSize the maximum number of threads to allow in the
+     *        pool
+     * @param keepAliveTime when the number of threads is greater than
+     *        the core, this is the maximum time that excess idle threads
+     *        will wait for new tasks before terminating.
+     * @param unit the time unit for the {@code keepAliveTime} argument
+     * @throws IllegalArgumentException if one of the following holds:<br>
+     *         {@code corePoolSize < 0}<br>
+     *         {@code keepAliveTime < 0}<br>
+     *         {@code maximumPoolSize <= 0}<br>
+     *         {@code maximumPoolSize < corePoolSize}
+     * @throws NullPointerException if {@code unit} is null
+     */
+    public WorkStealingThreadPoolExecutor(int corePoolSize,
+                                          int maximumPoolSize,
+                                          long keepAliveTime,
+                                          TimeUnit unit) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit,
+              new StealingQueue());
+    }
+
+    /**
+     * Creates a new {@code WorkStealingThreadPoolExecutor} with the
+     * given initial parameters.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @param maximumPoolSize the maximum number of threads to allow in the
+     *        pool
+     * @param keepAliveTime when the number of threads is greater than
+     *        the core, this is the maximum time that excess idle threads
+     *        will wait for new tasks before terminating.
+     * @param unit the time unit for the {@code keepAliveTime} argument
+     * @param threadFactory the factory to use when the executor
+     *        creates a new thread
+     * @param handler the handler to use when execution is blocked
+     *        because the executor has been shut down
+     * @throws IllegalArgumentException if one of the following holds:<br>
+     *         {@code corePoolSize < 0}<br>
+     *         {@code keepAliveTime < 0}<br>
+     *         {@code maximumPoolSize <= 0}<br>
+     *         {@code maximumPoolSize < corePoolSize}
+     * @throws NullPointerException if {@code unit}, {@code threadFactory}
+     *         or {@code handler} is null
+     */
+    public WorkStealingThreadPoolExecutor(int corePoolSize,
+                                          int maximumPoolSize,
+                                          long keepAliveTime,
+                                          TimeUnit unit,
+                                          ThreadFactory threadFactory,
+                                          RejectedExecutionHandler handler) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit,
+              new StealingQueue(), threadFactory, handler);
+    }
+
+    /**
+     * The work queue: an array of non-blocking lanes, plus a queue of
+     * waiting takers.
+     *
+     * A taker that finds all lanes empty enqueues a Waiter, rescans
+     * the lanes, and only then parks.  A producer adds its element and
+     * then signals the first live Waiter, if any.  Since each side
+     * publishes before checking the other, either the taker's rescan
+     * sees the element or the producer sees the Waiter.  A Waiter is
+     * resolved exactly once, by CAS from WAITING to either SIGNALLED
+     * (by a producer) or CANCELLED (by its taker, on timeout, interrupt
+     * or finding an element on its own); producers skip cancelled
+     * Waiters.
+     */
+    static final class StealingQueue extends AbstractQueue<Runnable>
+            implements BlockingQueue<Runnable> {
+
+        /** Upper bound on the number of lanes. */
+        private static final int MAX_LANES = 1 << 8;
+
+        private final ConcurrentLinkedQueue<Runnable>[] lanes;
+        private final ConcurrentLinkedQueue<Waiter> waiters =
+            new ConcurrentLinkedQueue<>();
+
+        @SuppressWarnings("unchecked")
+        StealingQueue() {
+            int p = Runtime.getRuntime().availableProcessors();
+            int n = 1;
+            while (n < p && n < MAX_LANES)
+                n <<= 1;
+            lanes = (ConcurrentLinkedQueue<Runnable>[])
+                new ConcurrentLinkedQueue<?>[n];
+            for (int i = 0; i < n; i++)
+                lanes[i] = new ConcurrentLinkedQueue<Runnable>();
+        }
+
+        /** Returns the caller's hash, used to select its own lane. */
+        private static int probe() {
+            int h = ThreadLocalRandom.getProbe();
+            if (h == 0) {
+                ThreadLocalRandom.localInit();
+                h = ThreadLocalRandom.getProbe();
+            }
+            return h;
+        }
+
+        public boolean offer(Runnable e) {
+            Objects.requireNonNull(e);
+            ConcurrentLinkedQueue<Runnable>[] ls = lanes;
+            ls[probe() & (ls.length - 1)].offer(e);
+            signalWaiter();
+            return true;
+        }
+
+        public void put(Runnable e) {
+            offer(e);
+        }
+
+        public boolean offer(Runnable e, long timeout, TimeUnit unit) {
+            return offer(e);
+        }
+
+        /**
+         * Takes an element from the caller's lane, or else steals one
+         * from the other lanes.
+         */
+        public Runnable poll() {
+            ConcurrentLinkedQueue<Runnable>[] ls = lanes;
+            int n = ls.length, h = probe();
+            for (int i = 0; i < n; i++) {
+                Runnable e = ls[(h + i) & (n - 1)].poll();
+                if (e != null)
+                    return e;
+            }
+            return null;
+        }
+
+        public Runnable take() throws InterruptedException {
+            return await(false, 0L);
+        }
+
+        public Runnable poll(long timeout, TimeUnit unit)
+            throws InterruptedException {
+            return await(true, unit.toNanos(timeout));
+        }
+
+        /**
+         * Takes an element, waiting if necessary.
+         *
+         * @return the element, or null if timed out
+         */
+        private Runnable await(boolean timed, long nanos)
+            throws InterruptedException {
+            final long deadline = timed ? System.nanoTime() + nanos : 0L;
+            Waiter w = null;
+            for (;;) {
+                Runnable e = poll();
+                if (e != null) {
+                    if (w != null && !w.cancel())
+                        signalWaiter(); // signalled meanwhile; pass it on
+                    return e;
+                }
+                if (w == null || w.state == Waiter.SIGNALLED) {
+                    // (re)register, and rescan before parking
+                    waiters.offer(w = new Waiter(Thread.currentThread()));
+                    continue;
+                }
+                if (Thread.interrupted()) {
+                    if (!w.cancel())
+                        signalWaiter(); // pass on the signal
+                    throw new InterruptedException();
+                }
+                if (timed) {
+                    if ((nanos = deadline - System.nanoTime()) <= 0L) {
+                        if (w.cancel())
+                            return null;
+                        continue;       // signalled; take the element
+                    }
+                    LockSupport.parkNanos(this, nanos);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+        }
+
+        /**
+         * Wakes the first live waiter, if any.
+         */
+        private void signalWaiter() {
+            for (Waiter w; (w = waiters.poll()) != null; ) {
+                if (w.signal())
+                    break;
+            }
+        }
+
+        public Runnable peek() {
+            for (ConcurrentLinkedQueue<Runnable> lane : lanes) {
+                Runnable e = lane.peek();
+                if (e != null)
+                    return e;
+            }
+            return null;
+        }
+
+        public boolean isEmpty() {
+            for (ConcurrentLinkedQueue<Runnable> lane : lanes) {
+                if (!lane.isEmpty())
+                    return false;
+            }
+            return true;
+        }
+
+        public int size() {
+            long n = 0L;
+            for (ConcurrentLinkedQueue<Runnable> lane : lanes)
+                n += lane.size();
+            return (int)Math.min(n, Integer.MAX_VALUE);
+        }
+
+        public int remainingCapacity() {
+            return Integer.MAX_VALUE;
+        }
+
+        public boolean remove(Object o) {
+            if (o != null) {
+                for (ConcurrentLinkedQueue<Runnable> lane : lanes) {
+                    if (lane.remove(o))
+                        return true;
+                }
+            }
+            return false;
+        }
+
+        public boolean contains(Object o) {
+            if (o != null) {
+                for (ConcurrentLinkedQueue<Runnable> lane : lanes) {
+                    if (lane.contains(o))
+                        return true;
+                }
+            }
+            return false;
+        }
+
+        public int drainTo(Collection<? super Runnable> c) {
+            return drainTo(c, Integer.MAX_VALUE);
+        }
+
+        public int drainTo(Collection<? super Runnable> c, int maxElements) {
+            Objects.requireNonNull(c);
+            if (c == this)
+                throw new IllegalArgumentException();
+            int n = 0;
+            for (ConcurrentLinkedQueue<Runnable> lane : lanes) {
+                for (Runnable e; n < maxElements && (e = lane.poll()) != null; n++)
+                    c.add(e);
+            }
+            return n;
+        }
+
+        /**
+         * Returns a weakly consistent iterator over the lanes in turn.
+         */
+        public Iterator<Runnable> iterator() {
+            return new Iterator<Runnable>() {
+                private int lane;
+                private Iterator<Runnable> it = lanes[0].iterator();
+                private Iterator<Runnable> last;
+
+                public boolean hasNext() {
+                    while (!it.hasNext()) {
+                        if (++lane >= lanes.length)
+                            return false;
+                        it = lanes[lane].iterator();
+                    }
+                    return true;
+                }
+
+                public Runnable next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    last = it;
+                    return it.next();
+                }
+
+                public void remove() {
+                    if (last == null)
+                        throw new IllegalStateException();
+                    last.remove();
+                    last = null;
+                }
+            };
+        }
+
+        /**
+         * A taker waiting for an element.
+         */
+        static final class Waiter {
+            static final int WAITING = 0, SIGNALLED = 1, CANCELLED = 2;
+
+            final Thread thread;
+            volatile int state;
+
+            Waiter(Thread thread) {
+                this.thread = thread;
+            }
+
+            /** Resolves as signalled and unparks the taker, if waiting. */
+            boolean signal() {
+                if (STATE.compareAndSet(this, WAITING, SIGNALLED)) {
+                    LockSupport.unpark(thread);
+                    return true;
+                }
+                return false;
+            }
+
+            /** Resolves as cancelled, if not already signalled. */
+            boolean cancel() {
+                return state == CANCELLED
+                    || STATE.compareAndSet(this, WAITING, CANCELLED);
+            }
+
+            // VarHandle mechanics
+            private static final java.lang.invoke.VarHandle STATE;
+            static {
+                try {
+                    STATE = java.lang.invoke.MethodHandles.lookup()
+                        .findVarHandle(Waiter.class, "state", int.class);
+                } catch (ReflectiveOperationException e) {
+                    throw new ExceptionInInitializerError(e);
+                }
+            }
+        }
+    }
+}
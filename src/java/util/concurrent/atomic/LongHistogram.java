@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.concurrent.atomic;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A concurrent histogram of non-negative {@code long} values, such as
+ * latencies in nanoseconds, that may be recorded by many threads at
+ * once. Values are counted in log-linear buckets: each power-of-two
+ * range is divided into {@code 2^subBucketBits} equal sub-buckets, so
+ * every value below {@code 2^(subBucketBits + 1)} is counted exactly
+ * and larger values are counted with a relative error of at most
+ * {@code 2^-subBucketBits}.
+ *
+ * <p>Like {@link LongAdder}, this class spreads updates across a
+ * table of stripes that grows under contention, using the same
+ * per-thread probe as {@link Striped64} to choose a stripe. Each
+ * stripe holds its own array of bucket counts. Recording a value is
+ * wait-free: it makes one compare-and-set attempt on the bucket and,
+ * if that fails, falls back to an atomic add and moves the thread to
+ * another stripe. Table growth is only ever attempted, never waited
+ * for.
+ *
+ * <p>{@link #snapshot} and {@link #snapshotAndReset} sum the stripes
+ * without blocking recording threads. A snapshot taken while values
+ * are being recorded is not an atomic view, but {@code
+ * snapshotAndReset} atomically takes each count it reads, so every
+ * recorded value appears in exactly one successive snapshot.
+ *
+ * @since 11
+ */
+public class LongHistogram {
+
+    /*
+     * Stripes are plain long[] arrays of nbuckets + 1 elements, the
+     * last element holding the sum of recorded values. Separate
+     * arrays are far enough apart that they need no padding beyond
+     * what their size already provides. As in Striped64, the table
+     * of stripes starts out null, with all updates going to the base
+     * stripe, and is created and doubled (up to NCPU) by whichever
+     * thread first sees a failed CAS and can take the busy lock.
+     * Threads that cannot take it just carry on.
+     */
+
+    /** The largest supported number of sub-bucket bits. */
+    static final int MAX_SUB_BUCKET_BITS = 10;
+
+    /** Number of CPUS, to place bound on table size */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    private final int subBucketBits;
+
+    private final int nbuckets;
+
+    /** Counts used when there is no contention. */
+    private final long[] base;
+
+    /** Table of stripes. When non-null, size is a power of 2. */
+    private transient volatile long[][] stripes;
+
+    /** Spinlock (locked via CAS) used when resizing and/or creating stripes. */
+    private transient volatile int stripesBusy;
+
+    /**
+     * Creates a new histogram with three sub-bucket bits, giving a
+     * relative error of at most 12.5%.
+     */
+    public LongHistogram() {
+        this(3);
+    }
+
+    /**
+     * Creates a new histogram with the given precision.
+     *
+     * @param subBucketBits the number of bits of each value, below
+     *        its highest one bit, that select its sub-bucket
+     * @throws IllegalArgumentException if {@code subBucketBits} is
+     *         negative or greater than 10
+     */
+    public LongHistogram(int subBucketBits) {
+        if (subBucketBits < 0 || subBucketBits > MAX_SUB_BUCKET_BITS)
+            throw new IllegalArgumentException();
+        this.subBucketBits = subBucketBits;
+        this.nbuckets = bucketCount(subBucketBits);
+        this.base = new long[nbuckets + 1];
+    }
+
+    /**
+     * Records the given value. Negative values are recorded as zero.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        record(value, 1L);
+    }
+
+    /**
+     * Records the given value {@code count} times. Negative values
+     * are recorded as zero.
+     *
+     * @param value the value to record
+     * @param count the number of occurrences
+     * @throws IllegalArgumentException if {@code count} is negative
+     */
+    public void record(long value, long count) {
+        if (count < 0L)
+            throw new IllegalArgumentException();
+        if (value < 0L)
+            value = 0L;
+        int i = bucketIndex(value, subBucketBits);
+        long[][] ss; long[] s; long c; int h = 0; boolean uncontended;
+        if ((ss = stripes) == null)
+            s = base;
+        else if ((s = ss[(h = Striped64.getProbe()) & (ss.length - 1)]) == null)
+            s = base;
+        uncontended = AA.compareAndSet(s, i, c = (long)AA.getOpaque(s, i),
+                                       c + count);
+        if (!uncontended)
+            AA.getAndAdd(s, i, count);
+        AA.getAndAdd(s, nbuckets, value * count);
+        if (!uncontended || (ss != null && s == base))
+            contended(h);
+    }
+
+    /**
+     * Called after contention on a stripe, or when the current
+     * thread has no stripe of its own. Creates a stripe for the
+     * thread or doubles the table, if the lock is free, and moves the
+     * thread to another stripe. Never waits.
+     */
+    private void contended(int h) {
+        if (h == 0) {
+            ThreadLocalRandom.current(); // force initialization
+            h = Striped64.getProbe();
+        }
+        long[][] ss = stripes;
+        if (stripesBusy == 0 && STRIPES_BUSY.compareAndSet(this, 0, 1)) {
+            try {
+                if (ss == stripes) {
+                    int n;
+                    if (ss == null) {
+                        ss = new long[2][];
+                        ss[h & 1] = new long[nbuckets + 1];
+                        stripes = ss;
+                    } else if (ss[h & ((n = ss.length) - 1)] == null) {
+                        ss[h & (n - 1)] = new long[nbuckets + 1];
+                        return; // the thread now has its own stripe
+                    } else if (n < NCPU) {
+                        long[][] rs = new long[n << 1][];
+                        System.arraycopy(ss, 0, rs, 0, n);
+                        stripes = rs;
+                    }
+                }
+            } finally {
+                stripesBusy = 0;
+            }
+        }
+        Striped64.advanceProbe(h);
+    }
+
+    /**
+     * Returns a snapshot of the counts recorded so far. Values
+     * recorded concurrently with this method may or may not be
+     * included.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        return collect(false);
+    }
+
+    /**
+     * Returns a snapshot of the counts recorded so far and resets
+     * them to zero. Each value recorded concurrently with this method
+     * is counted either in the returned snapshot or in the next one.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshotAndReset() {
+        return collect(true);
+    }
+
+    /**
+     * Resets all counts to zero. This method may be a useful
+     * alternative to creating a new histogram, but is only effective
+     * if there are no concurrent updates.
+     */
+    public void reset() {
+        collect(true);
+    }
+
+    private Snapshot collect(boolean reset) {
+        long[] counts = new long[nbuckets + 1];
+        add(counts, base, reset);
+        long[][] ss = stripes;
+        if (ss != null) {
+            for (long[] s : ss) {
+                if (s != null)
+                    add(counts, s, reset);
+            }
+        }
+        return new Snapshot(counts, subBucketBits);
+    }
+
+    private static void add(long[] counts, long[] s, boolean reset) {
+        for (int i = 0; i < counts.length; ++i)
+            counts[i] += reset ? (long)AA.getAndSet(s, i, 0L)
+                : (long)AA.getVolatile(s, i);
+    }
+
+    /**
+     * Returns the number of sub-bucket bits of this histogram.
+     *
+     * @return the number of sub-bucket bits
+     */
+    public int subBucketBits() {
+        return subBucketBits;
+    }
+
+    /**
+     * Returns the String representation of a {@link #snapshot}.
+     * @return the String representation of a {@link #snapshot}
+     */
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    static int bucketCount(int b) {
+        return (64 - b) << b;
+    }
+
+    static int bucketIndex(long v, int b) {
+        if (v < (1L << b))
+            return (int)v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - b;
+        return ((shift + 1) << b) + (int)((v >>> shift) & ((1L << b) - 1));
+    }
+
+    static long lowerBound(int i, int b) {
+        int sub = 1 << b;
+        if (i < sub)
+            return i;
+        int shift = (i >>> b) - 1;
+        return (long)(sub | (i & (sub - 1))) << shift;
+    }
+
+    static long upperBound(int i, int b) {
+        int shift = (i >>> b) - 1;
+        return lowerBound(i, b) + (shift <= 0 ? 0L : (1L << shift) - 1L);
+    }
+
+    /**
+     * An immutable copy of the counts of a {@link LongHistogram}.
+     *
+     * @since 11
+     */
+    public static final class Snapshot {
+        private final long[] counts; // bucket counts, then the sum
+        private final int subBucketBits;
+        private final long count;
+
+        Snapshot(long[] counts, int subBucketBits) {
+            this.counts = counts;
+            this.subBucketBits = subBucketBits;
+            long n = 0L;
+            for (int i = 0; i < counts.length - 1; ++i)
+                n += counts[i];
+            this.count = n;
+        }
+
+        /**
+         * Returns the number of recorded values.
+         *
+         * @return the number of recorded values
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * Returns the sum of recorded values. The sum silently
+         * overflows if it exceeds {@code Long.MAX_VALUE}.
+         *
+         * @return the sum of recorded values
+         */
+        public long sum() {
+            return counts[counts.length - 1];
+        }
+
+        /**
+         * Returns the arithmetic mean of recorded values, or zero if
+         * there are none.
+         *
+         * @return the mean of recorded values
+         */
+        public double mean() {
+            return (count == 0L) ? 0.0d : (double)sum() / count;
+        }
+
+        /**
+         * Returns the number of buckets.
+         *
+         * @return the number of buckets
+         */
+        public int bucketCount() {
+            return counts.length - 1;
+        }
+
+        /**
+         * Returns the number of recorded values in the given bucket.
+         *
+         * @param bucket the bucket index
+         * @return the number of recorded values in the bucket
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public long count(int bucket) {
+            return counts[checkBucket(bucket)];
+        }
+
+        /**
+         * Returns the smallest value counted in the given bucket.
+         *
+         * @param bucket the bucket index
+         * @return the smallest value counted in the bucket
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public long lowerBound(int bucket) {
+            return LongHistogram.lowerBound(checkBucket(bucket), subBucketBits);
+        }
+
+        /**
+         * Returns the largest value counted in the given bucket.
+         *
+         * @param bucket the bucket index
+         * @return the largest value counted in the bucket
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        public long upperBound(int bucket) {
+            return LongHistogram.upperBound(checkBucket(bucket), subBucketBits);
+        }
+
+        /**
+         * Returns an upper bound of the value at the given quantile:
+         * the largest value of the bucket holding the value that
+         * {@code quantile * count()} recorded values do not exceed.
+         * Returns zero if no values have been recorded.
+         *
+         * @param quantile the quantile, between 0.0 and 1.0
+         * @return an upper bound of the value at the quantile
+         * @throws IllegalArgumentException if {@code quantile} is not
+         *         between 0.0 and 1.0
+         */
+        public long valueAtQuantile(double quantile) {
+            if (!(quantile >= 0.0d && quantile <= 1.0d))
+                throw new IllegalArgumentException();
+            if (count == 0L)
+                return 0L;
+            long rank = Math.max(1L, (long)Math.ceil(quantile * count));
+            long seen = 0L;
+            int last = 0;
+            for (int i = 0; i < counts.length - 1; ++i) {
+                if (counts[i] != 0L) {
+                    last = i;
+                    if ((seen += counts[i]) >= rank)
+                        break;
+                }
+            }
+            return LongHistogram.upperBound(last, subBucketBits);
+        }
+
+        private int checkBucket(int bucket) {
+            if (bucket < 0 || bucket >= counts.length - 1)
+                throw new IndexOutOfBoundsException(bucket);
+            return bucket;
+        }
+
+        /**
+         * Returns a summary of the count, mean and common quantiles.
+         * @return a summary of this snapshot
+         */
+        public String toString() {
+            return "[count=" + count + ", mean=" + mean()
+                + ", p50=" + valueAtQuantile(0.5d)
+                + ", p99=" + valueAtQuantile(0.99d)
+                + ", max=" + valueAtQuantile(1.0d) + "]";
+        }
+    }
+
+    // VarHandle mechanics
+    private static final VarHandle AA
+        = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle STRIPES_BUSY;
+    static {
+        try {
+            MethodHandles.Lookup l = MethodHandles.lookup();
+            STRIPES_BUSY = l.findVarHandle(LongHistogram.class,
+                                           "stripesBusy", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
@@ -33,6 +33,9 @@ import java.io.File;
 import java.io.RandomAccessFile;
 import java.io.UncheckedIOException;
 import java.lang.ref.Cleaner.Cleanable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -43,7 +46,6 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Objects;
 import java.util.NoSuchElementException;
@@ -51,6 +53,8 @@ import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntFunction;
@@ -66,6 +70,7 @@ import jdk.internal.misc.VM;
 import jdk.internal.perf.PerfCounter;
 import jdk.internal.ref.CleanerFactory;
 import jdk.internal.vm.annotation.Stable;
+import sun.nio.ch.DirectBuffer;
 
 import static java.util.zip.ZipConstants64.*;
 import static java.util.zip.ZipUtils.*;
@@ -387,8 +392,10 @@ class ZipFile implements ZipConstants, Closeable {
             if (pos == -1) {
                 return null;
             }
-            in = new ZipFileInputStream(zsrc.cen, pos);
-            switch (CENHOW(zsrc.cen, pos)) {
+            byte[] cen = zsrc.cenAt(pos);
+            int off = zsrc.cenOffset(pos);
+            in = new ZipFileInputStream(cen, off);
+            switch (CENHOW(cen, off)) {
             case STORED:
                 synchronized (istreams) {
                     istreams.add(in);
@@ -397,7 +404,7 @@ class ZipFile implements ZipConstants, Closeable {
             case DEFLATED:
                 // Inflater likes a bit of slack
                 // MORE: Compute good size for inflater stream:
-                long size = CENLEN(zsrc.cen, pos) + 2;
+                long size = CENLEN(cen, off) + 2;
                 if (size > 65536) {
                     size = 8192;
                 }
@@ -605,12 +612,13 @@ class ZipFile implements ZipConstants, Closeable {
     }
 
     private String getEntryName(int pos) {
-        byte[] cen = res.zsrc.cen;
-        int nlen = CENNAM(cen, pos);
-        if (!zc.isUTF8() && (CENFLG(cen, pos) & USE_UTF8) != 0) {
-            return zc.toStringUTF8(cen, pos + CENHDR, nlen);
+        byte[] cen = res.zsrc.cenAt(pos);
+        int off = res.zsrc.cenOffset(pos);
+        int nlen = CENNAM(cen, off);
+        if (!zc.isUTF8() && (CENFLG(cen, off) & USE_UTF8) != 0) {
+            return zc.toStringUTF8(cen, off + CENHDR, nlen);
         } else {
-            return zc.toString(cen, pos + CENHDR, nlen);
+            return zc.toString(cen, off + CENHDR, nlen);
         }
     }
 
@@ -657,35 +665,36 @@ class ZipFile implements ZipConstants, Closeable {
     /* Checks ensureOpen() before invoke this method */
     private ZipEntry getZipEntry(String name, byte[] bname, int pos,
                                  Function<String, ? extends ZipEntry> func) {
-        byte[] cen = res.zsrc.cen;
-        int nlen = CENNAM(cen, pos);
-        int elen = CENEXT(cen, pos);
-        int clen = CENCOM(cen, pos);
-        int flag = CENFLG(cen, pos);
+        byte[] cen = res.zsrc.cenAt(pos);
+        int off = res.zsrc.cenOffset(pos);
+        int nlen = CENNAM(cen, off);
+        int elen = CENEXT(cen, off);
+        int clen = CENCOM(cen, off);
+        int flag = CENFLG(cen, off);
         if (name == null || bname.length != nlen) {
             // to use the entry name stored in cen, if the passed in name is
             // (1) null, invoked from iterator, or
             // (2) not equal to the name stored, a slash is appended during
             // getEntryPos() search.
             if (!zc.isUTF8() && (flag & USE_UTF8) != 0) {
-                name = zc.toStringUTF8(cen, pos + CENHDR, nlen);
+                name = zc.toStringUTF8(cen, off + CENHDR, nlen);
             } else {
-                name = zc.toString(cen, pos + CENHDR, nlen);
+                name = zc.toString(cen, off + CENHDR, nlen);
             }
         }
         ZipEntry e = func.apply(name);    //ZipEntry e = new ZipEntry(name);
         e.flag = flag;
-        e.xdostime = CENTIM(cen, pos);
-        e.crc = CENCRC(cen, pos);
-        e.size = CENLEN(cen, pos);
-        e.csize = CENSIZ(cen, pos);
-        e.method = CENHOW(cen, pos);
+        e.xdostime = CENTIM(cen, off);
+        e.crc = CENCRC(cen, off);
+        e.size = CENLEN(cen, off);
+        e.csize = CENSIZ(cen, off);
+        e.method = CENHOW(cen, off);
         if (elen != 0) {
-            int start = pos + CENHDR + nlen;
+            int start = off + CENHDR + nlen;
             e.setExtra0(Arrays.copyOfRange(cen, start, start + elen), true);
         }
         if (clen != 0) {
-            int start = pos + CENHDR + nlen + elen;
+            int start = off + CENHDR + nlen + elen;
             if (!zc.isUTF8() && (flag & USE_UTF8) != 0) {
                 e.comment = zc.toStringUTF8(cen, start, clen);
             } else {
@@ -1092,10 +1101,11 @@ class ZipFile implements ZipConstants, Closeable {
                 return null;
             }
             String[] names = new String[zsrc.metanames.length];
-            byte[] cen = zsrc.cen;
             for (int i = 0; i < names.length; i++) {
                 int pos = zsrc.metanames[i];
-                names[i] = new String(cen, pos + CENHDR, CENNAM(cen, pos),
+                byte[] cen = zsrc.cenAt(pos);
+                int off = zsrc.cenOffset(pos);
+                names[i] = new String(cen, off + CENHDR, CENNAM(cen, off),
                                       StandardCharsets.UTF_8);
             }
             return names;
@@ -1105,6 +1115,14 @@ class ZipFile implements ZipConstants, Closeable {
     private static boolean isWindows;
     private static final JavaLangAccess JLA;
 
+    // true to map the central directory of zip files rather than read it
+    // into the heap, see Source.readCEN. The mapping is released when the
+    // last ZipFile sharing the Source is closed. While it is in place, a
+    // zip file that is truncated or rewritten in place by another process
+    // can crash the VM (SIGBUS) or raise InternalError on access, rather
+    // than fail with a ZipException as a CEN read into the heap would.
+    private static final boolean mapCEN;
+
     static {
         SharedSecrets.setJavaUtilZipFileAccess(
             new JavaUtilZipFileAccess() {
@@ -1139,14 +1157,21 @@ class ZipFile implements ZipConstants, Closeable {
         );
         JLA = SharedSecrets.getJavaLangAccess();
         isWindows = VM.getSavedProperty("os.name").contains("Windows");
+        mapCEN = Boolean.parseBoolean(VM.getSavedProperty("jdk.util.zip.mapCEN"));
     }
 
     private static class Source {
         private final Key key;               // the key in files
-        private int refs = 1;
+                                             // number of ZipFiles sharing this
+                                             // source; 0 once it is released
+        private final AtomicInteger refs = new AtomicInteger(1);
 
         private RandomAccessFile zfile;      // zfile of the underlying zip file
-        private byte[] cen;                  // CEN & ENDHDR
+        private byte[] cen;                  // CEN & ENDHDR, if not mapped
+        private ByteBuffer cenbuf;           // CEN & ENDHDR, if mapped
+        private long cenpos;                 // position of CEN & ENDHDR
+        private int cenlen;                  // length of CEN & ENDHDR
+        private final boolean mapped;        // true to map the CEN
         private long locpos;                 // position of first LOC header (usually 0)
         private byte[] comment;              // zip file comment
                                              // list of meta entries in META-INF dir
@@ -1216,45 +1241,61 @@ class ZipFile implements ZipConstants, Closeable {
                 return false;
             }
         }
-        private static final HashMap<Key, Source> files = new HashMap<>();
+        private static final ConcurrentHashMap<Key, Source> files =
+            new ConcurrentHashMap<>();
 
 
         static Source get(File file, boolean toDelete) throws IOException {
             Key key = new Key(file,
                               Files.readAttributes(file.toPath(), BasicFileAttributes.class));
-            Source src;
-            synchronized (files) {
-                src = files.get(key);
-                if (src != null) {
-                    src.refs++;
-                    return src;
-                }
+            Source src = files.get(key);
+            if (src != null && src.retain()) {
+                return src;
             }
-            src = new Source(key, toDelete);
-
-            synchronized (files) {
-                if (files.containsKey(key)) {    // someone else put in first
-                    src.close();                 // close the newly created one
-                    src = files.get(key);
-                    src.refs++;
+            Source newSrc = new Source(key, toDelete);
+            while (true) {
+                src = files.putIfAbsent(key, newSrc);
+                if (src == null) {
+                    return newSrc;
+                }
+                if (src.retain()) {              // someone else put in first
+                    newSrc.close();              // close the newly created one
                     return src;
                 }
-                files.put(key, src);
-                return src;
+                // the existing one is being released, replace it
+                if (files.replace(key, src, newSrc)) {
+                    return newSrc;
+                }
             }
         }
 
         static void release(Source src) throws IOException {
-            synchronized (files) {
-                if (src != null && --src.refs == 0) {
-                    files.remove(src.key);
-                    src.close();
-                }
+            if (src != null && src.refs.decrementAndGet() == 0) {
+                files.remove(src.key, src);
+                src.close();
             }
         }
 
+        /*
+         * Adds a reference to this source, unless it has already been
+         * released by its last user, in which case it must not be reused.
+         */
+        private boolean retain() {
+            int n;
+            do {
+                n = refs.get();
+                if (n == 0) {
+                    return false;
+                }
+            } while (!refs.compareAndSet(n, n + 1));
+            return true;
+        }
+
         private Source(Key key, boolean toDelete) throws IOException {
             this.key = key;
+            // a file that is deleted on open is read as before, so that no
+            // mapping outlives it
+            this.mapped = mapCEN && !toDelete;
             if (toDelete) {
                 if (isWindows) {
                     this.zfile = SharedSecrets.getJavaIORandomAccessFileAccess()
@@ -1267,11 +1308,20 @@ class ZipFile implements ZipConstants, Closeable {
                 this.zfile = new RandomAccessFile(key.file, "r");
             }
             try {
-                initCEN(-1);
+                // a file that is deleted on open cannot be opened again,
+                // so its index is not worth caching
+                boolean cacheIndex = !toDelete && ZipIndexCache.isEnabled();
+                if (!cacheIndex || !initCEN(ZipIndexCache.load(key.file, key.attrs))) {
+                    initCEN(-1);
+                    if (cacheIndex && total > 0) {
+                        ZipIndexCache.store(key.file, key.attrs, index());
+                    }
+                }
                 byte[] buf = new byte[4];
                 readFullyAt(buf, 0, 4, 0);
                 this.startsWithLoc = (LOCSIG(buf) == LOCSIG);
             } catch (IOException x) {
+                unmapCEN();
                 try {
                     this.zfile.close();
                 } catch (IOException xx) {}
@@ -1283,6 +1333,7 @@ class ZipFile implements ZipConstants, Closeable {
             zfile.close();
             zfile = null;
             cen = null;
+            unmapCEN();
             entries = null;
             table = null;
             metanames = null;
@@ -1314,6 +1365,52 @@ class ZipFile implements ZipConstants, Closeable {
             }
         }
 
+        /*
+         * Returns an array holding the CEN header at pos, followed by its
+         * name, extra field and comment. The header starts at index
+         * cenOffset(pos) of the returned array. If the CEN is mapped, the
+         * array is a copy of this one header.
+         */
+        private byte[] cenAt(int pos) {
+            if (cenbuf == null) {
+                return cen;
+            }
+            int len = CENHDR + cenNAM(pos) + cenEXT(pos) + cenCOM(pos);
+            byte[] hdr = new byte[len];
+            cenbuf.duplicate().position(pos).get(hdr);
+            return hdr;
+        }
+
+        private int cenOffset(int pos) {
+            return (cenbuf == null) ? pos : 0;
+        }
+
+        // CEN field access methods, for either a heap or a mapped CEN
+        private int cenSH(int pos) {
+            if (cenbuf == null) {
+                return SH(cen, pos);
+            }
+            return Short.toUnsignedInt(cenbuf.getShort(pos));
+        }
+
+        private long cenLG(int pos) {
+            if (cenbuf == null) {
+                return LG(cen, pos);
+            }
+            return Integer.toUnsignedLong(cenbuf.getInt(pos));
+        }
+
+        private byte cenByte(int pos) {
+            return (cenbuf == null) ? cen[pos] : cenbuf.get(pos);
+        }
+
+        private long cenSIG(int pos) { return cenLG(pos); }
+        private int  cenFLG(int pos) { return cenSH(pos + 8); }
+        private int  cenHOW(int pos) { return cenSH(pos + 10);}
+        private int  cenNAM(int pos) { return cenSH(pos + 28);}
+        private int  cenEXT(int pos) { return cenSH(pos + 30);}
+        private int  cenCOM(int pos) { return cenSH(pos + 32);}
+
         private static final int hashN(byte[] a, int off, int len) {
             int h = 1;
             while (len-- > 0) {
@@ -1433,6 +1530,160 @@ class ZipFile implements ZipConstants, Closeable {
             return null; //make compiler happy
         }
 
+        // Reads or maps the CEN and END at cenpos.
+        private void readCEN() throws IOException {
+            if (mapped) {
+                // map the CEN and END, so that they are shared with the
+                // page cache instead of being copied into the heap
+                if (cenpos + cenlen > zfile.length()) {
+                    zerror("read CEN tables failed");
+                }
+                unmapCEN();
+                cenbuf = zfile.getChannel()
+                              .map(FileChannel.MapMode.READ_ONLY, cenpos, cenlen)
+                              .order(ByteOrder.LITTLE_ENDIAN);
+            } else {
+                // read in the CEN and END
+                cen = new byte[cenlen];
+                if (readFullyAt(cen, 0, cen.length, cenpos) != cenlen) {
+                    zerror("read CEN tables failed");
+                }
+            }
+        }
+
+        // Sets up the index from a cached copy, and reads the CEN it
+        // refers to. Returns false if there is no usable cached copy.
+        // The cached copy is only a hint keyed by the size and mtime of
+        // the file, so it is checked against the END header and the CEN
+        // it refers to before it is used.
+        private boolean initCEN(ZipIndexCache.Index index) throws IOException {
+            if (index == null || index.total <= 0 || index.tablelen <= 0) {
+                return false;
+            }
+            End end = findEND();
+            if (end.endpos == 0 || end.cenlen > end.endpos ||
+                index.cenpos != end.endpos - end.cenlen ||
+                index.cenlen != end.cenlen + ENDHDR ||
+                index.locpos != index.cenpos - end.cenoff ||
+                index.locpos < 0 ||
+                !checkIndex(index)) {
+                return false;
+            }
+            cenpos = index.cenpos;
+            cenlen = index.cenlen;
+            locpos = index.locpos;
+            total = index.total;
+            tablelen = index.tablelen;
+            entries = index.entries;
+            table = index.table;
+            // comment has been read by findEND
+            readCEN();
+
+            // Check that each entry is a CEN header that lies within the
+            // CEN, and find the META-INF entries from the CEN itself, as
+            // leaving out a signature file would make a signed jar appear
+            // unsigned. The entries are in CEN order, as are metanames.
+            ArrayList<Integer> metanamesList = null;
+            byte[] name = (cenbuf == null) ? null : new byte[256];
+            ByteBuffer namebuf = (cenbuf == null) ? null : cenbuf.duplicate();
+            int limit = cenlen - ENDHDR;
+            for (int i = 0; i < entries.length; i += 3) {
+                int pos = getEntryPos(i);
+                if (cenSIG(pos) != CENSIG) {
+                    return false;
+                }
+                int nlen = cenNAM(pos);
+                if (pos + CENHDR + nlen + cenEXT(pos) + cenCOM(pos) > limit) {
+                    return false;
+                }
+                byte[] nameBytes = cen;
+                int nameoff = pos + CENHDR;
+                if (cenbuf != null) {
+                    if (name.length < nlen) {
+                        name = new byte[nlen];
+                    }
+                    namebuf.position(nameoff);
+                    namebuf.get(name, 0, nlen);
+                    nameBytes = name;
+                    nameoff = 0;
+                }
+                if (isMetaName(nameBytes, nameoff, nlen)) {
+                    if (metanamesList == null)
+                        metanamesList = new ArrayList<>(4);
+                    metanamesList.add(pos);
+                }
+            }
+            metanames = null;
+            if (metanamesList != null) {
+                metanames = new int[metanamesList.size()];
+                for (int j = 0, len = metanames.length; j < len; j++) {
+                    metanames[j] = metanamesList.get(j);
+                }
+            }
+            return true;
+        }
+
+        // Checks that the hash chains and the CEN offsets of a cached
+        // index are within bounds, so that a corrupt or forged index
+        // cannot send a lookup out of the CEN or into an endless chain.
+        private static boolean checkIndex(ZipIndexCache.Index index) {
+            int[] entries = index.entries;
+            int[] table = index.table;
+            int limit = index.cenlen - ENDHDR - CENHDR;
+            if (entries.length != index.total * 3 ||
+                table.length != index.tablelen) {
+                return false;
+            }
+            for (int head : table) {
+                if (head != ZIP_ENDCHAIN &&
+                    (head < 0 || head >= entries.length || head % 3 != 0)) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < entries.length; i += 3) {
+                // each entry was chained in front of an earlier one
+                int next = entries[i + 1];
+                int pos = entries[i + 2];
+                if (next != ZIP_ENDCHAIN &&
+                    (next < 0 || next >= i || next % 3 != 0)) {
+                    return false;
+                }
+                if (pos < 0 || pos > limit) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Returns the index built by initCEN, to be cached.
+        private ZipIndexCache.Index index() {
+            ZipIndexCache.Index index = new ZipIndexCache.Index();
+            index.cenpos = cenpos;
+            index.cenlen = cenlen;
+            index.locpos = locpos;
+            index.total = total;
+            index.tablelen = tablelen;
+            index.entries = entries;
+            index.table = table;
+            index.comment = comment;
+            return index;
+        }
+
+        // Unmaps the CEN, if mapped, rather than leaving it to the GC, so
+        // that the file can be deleted on Windows once it is closed. This
+        // is only called when no ZipFile can read the CEN any more: every
+        // read holds the ZipFile's lock and checks that it is open.
+        private void unmapCEN() {
+            ByteBuffer buf = cenbuf;
+            if (buf != null) {
+                cenbuf = null;
+                jdk.internal.ref.Cleaner cl = ((DirectBuffer)buf).cleaner();
+                if (cl != null) {
+                    cl.clean();
+                }
+            }
+        }
+
         // Reads zip file central directory.
         private void initCEN(int knownTotal) throws IOException {
             if (knownTotal == -1) {
@@ -1442,22 +1693,20 @@ class ZipFile implements ZipConstants, Closeable {
                     total = 0;
                     entries  = new int[0];
                     cen = null;
+                    unmapCEN();
                     return;         // only END header present
                 }
                 if (end.cenlen > end.endpos)
                     zerror("invalid END header (bad central directory size)");
-                long cenpos = end.endpos - end.cenlen;     // position of CEN table
+                cenpos = end.endpos - end.cenlen;          // position of CEN table
                 // Get position of first local file (LOC) header, taking into
                 // account that there may be a stub prefixed to the zip file.
                 locpos = cenpos - end.cenoff;
                 if (locpos < 0) {
                     zerror("invalid END header (bad central directory offset)");
                 }
-                // read in the CEN and END
-                cen = new byte[(int)(end.cenlen + ENDHDR)];
-                if (readFullyAt(cen, 0, cen.length, cenpos) != end.cenlen + ENDHDR) {
-                    zerror("read CEN tables failed");
-                }
+                cenlen = (int)(end.cenlen + ENDHDR);
+                readCEN();
                 total = end.centot;
             } else {
                 total = knownTotal;
@@ -1474,39 +1723,54 @@ class ZipFile implements ZipConstants, Closeable {
             // list for all meta entries
             ArrayList<Integer> metanamesList = null;
 
+            // for a mapped CEN, each name is copied here to be hashed
+            byte[] name = (cenbuf == null) ? null : new byte[256];
+            ByteBuffer namebuf = (cenbuf == null) ? null : cenbuf.duplicate();
+
             // Iterate through the entries in the central directory
             int i = 0;
             int hsh = 0;
             int pos = 0;
-            int limit = cen.length - ENDHDR;
+            int limit = cenlen - ENDHDR;
             while (pos + CENHDR <= limit) {
                 if (i >= total) {
                     // This will only happen if the zip file has an incorrect
                     // ENDTOT field, which usually means it contains more than
                     // 65535 entries.
-                    initCEN(countCENHeaders(cen, limit));
+                    initCEN(countCENHeaders(limit));
                     return;
                 }
-                if (CENSIG(cen, pos) != CENSIG)
+                if (cenSIG(pos) != CENSIG)
                     zerror("invalid CEN header (bad signature)");
-                int method = CENHOW(cen, pos);
-                int nlen   = CENNAM(cen, pos);
-                int elen   = CENEXT(cen, pos);
-                int clen   = CENCOM(cen, pos);
-                if ((CENFLG(cen, pos) & 1) != 0)
+                int method = cenHOW(pos);
+                int nlen   = cenNAM(pos);
+                int elen   = cenEXT(pos);
+                int clen   = cenCOM(pos);
+                if ((cenFLG(pos) & 1) != 0)
                     zerror("invalid CEN header (encrypted entry)");
                 if (method != STORED && method != DEFLATED)
                     zerror("invalid CEN header (bad compression method: " + method + ")");
                 if (pos + CENHDR + nlen > limit)
                     zerror("invalid CEN header (bad header size)");
+                byte[] nameBytes = cen;
+                int nameoff = pos + CENHDR;
+                if (cenbuf != null) {
+                    if (name.length < nlen) {
+                        name = new byte[nlen];
+                    }
+                    namebuf.position(nameoff);
+                    namebuf.get(name, 0, nlen);
+                    nameBytes = name;
+                    nameoff = 0;
+                }
                 // Record the CEN offset and the name hash in our hash cell.
-                hash = hashN(cen, pos + CENHDR, nlen);
+                hash = hashN(nameBytes, nameoff, nlen);
                 hsh = (hash & 0x7fffffff) % tablelen;
                 next = table[hsh];
                 table[hsh] = idx;
                 idx = addEntry(idx, hash, next, pos);
                 // Adds name to metanames.
-                if (isMetaName(cen, pos + CENHDR, nlen)) {
+                if (isMetaName(nameBytes, nameoff, nlen)) {
                     if (metanamesList == null)
                         metanamesList = new ArrayList<>(4);
                     metanamesList.add(pos);
@@ -1522,7 +1786,7 @@ class ZipFile implements ZipConstants, Closeable {
                     metanames[j] = metanamesList.get(j);
                 }
             }
-            if (pos + ENDHDR != cen.length) {
+            if (pos + ENDHDR != cenlen) {
                 zerror("invalid CEN header (bad header size)");
             }
         }
@@ -1556,11 +1820,11 @@ class ZipFile implements ZipConstants, Closeable {
                     if (getEntryHash(idx) == hsh) {
                         // The CEN name must match the specfied one
                         int pos = getEntryPos(idx);
-                        if (name.length == CENNAM(cen, pos)) {
+                        if (name.length == cenNAM(pos)) {
                             boolean matched = true;
                             int nameoff = pos + CENHDR;
                             for (int i = 0; i < name.length; i++) {
-                                if (name[i] != cen[nameoff++]) {
+                                if (name[i] != cenByte(nameoff++)) {
                                     matched = false;
                                     break;
                                 }
@@ -1609,14 +1873,13 @@ class ZipFile implements ZipConstants, Closeable {
          * Returns the number of CEN headers in a central directory.
          * Will not throw, even if the zip file is corrupt.
          *
-         * @param cen copy of the bytes in a zip file's central directory
          * @param size number of bytes in central directory
          */
-        private static int countCENHeaders(byte[] cen, int size) {
+        private int countCENHeaders(int size) {
             int count = 0;
             for (int p = 0;
                  p + CENHDR <= size;
-                 p += CENHDR + CENNAM(cen, p) + CENEXT(cen, p) + CENCOM(cen, p))
+                 p += CENHDR + cenNAM(p) + cenEXT(p) + cenCOM(p))
                 count++;
             return count;
         }
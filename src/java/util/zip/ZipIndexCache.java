@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.util.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
+import jdk.internal.misc.VM;
+
+/**
+ * A persistent cache of the central directory index that ZipFile builds
+ * for each zip file it opens.
+ *
+ * If the system property {@code jdk.util.zip.indexCacheDir} names a
+ * directory, the index of every zip file opened by ZipFile is written to
+ * a file in that directory, keyed by the path, size and last modified
+ * time of the zip file. The next time the same, unchanged zip file is
+ * opened, possibly by another JVM, the index is read from the cache
+ * instead of being rebuilt from the central directory. ZipFile checks a
+ * cached index against the END header and the central directory before
+ * using it, and rebuilds the index if they do not agree.
+ *
+ * The cache is best-effort: an index file that is missing, stale or
+ * cannot be read or written is ignored.
+ */
+final class ZipIndexCache {
+
+    private static final int MAGIC   = 0x5a495831; // "ZIX1"
+    private static final int VERSION = 2;
+
+    private static final Path dir;
+    static {
+        String s = VM.getSavedProperty("jdk.util.zip.indexCacheDir");
+        Path p = null;
+        if (s != null && !s.isEmpty()) {
+            try {
+                p = new File(s).toPath();
+            } catch (RuntimeException e) {
+                // invalid path, cache disabled
+            }
+        }
+        dir = p;
+    }
+
+    private ZipIndexCache() {}
+
+    /**
+     * The index of a zip file, as built by ZipFile.Source.initCEN.
+     */
+    static final class Index {
+        long cenpos;         // position of the CEN in the zip file
+        int cenlen;          // length of CEN & ENDHDR
+        long locpos;         // position of first LOC header
+        int total;           // total number of entries
+        int tablelen;        // number of hash heads
+        int[] entries;       // hash, next and pos of each entry
+        int[] table;         // hash chain heads
+        byte[] comment;      // zip file comment, or null
+    }
+
+    static boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * Returns the cached index of the given zip file, or null if there
+     * is no up-to-date one.
+     */
+    static Index load(File file, BasicFileAttributes attrs) {
+        if (dir == null) {
+            return null;
+        }
+        return AccessController.doPrivileged(new PrivilegedAction<>() {
+            public Index run() {
+                try {
+                    return load0(file, attrs);
+                } catch (IOException | RuntimeException e) {
+                    return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the index of the given zip file to the cache.
+     */
+    static void store(File file, BasicFileAttributes attrs, Index index) {
+        if (dir == null) {
+            return;
+        }
+        AccessController.doPrivileged(new PrivilegedAction<>() {
+            public Void run() {
+                try {
+                    store0(file, attrs, index);
+                } catch (IOException | RuntimeException e) {
+                    // best-effort
+                }
+                return null;
+            }
+        });
+    }
+
+    private static Path indexFile(byte[] path) {
+        int h = 1;
+        for (byte b : path) {
+            h = 31 * h + b;
+        }
+        return dir.resolve(Integer.toHexString(h) + "-" + path.length + ".idx");
+    }
+
+    private static byte[] pathOf(File file) {
+        return file.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Index load0(File file, BasicFileAttributes attrs)
+        throws IOException
+    {
+        byte[] path = pathOf(file);
+        Path idx = indexFile(path);
+        if (!Files.isRegularFile(idx)) {
+            return null;
+        }
+        ByteBuffer bb;
+        try (FileChannel fc = FileChannel.open(idx, StandardOpenOption.READ)) {
+            bb = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size())
+                   .order(ByteOrder.nativeOrder());
+        }
+        if (bb.getInt() != MAGIC || bb.getInt() != VERSION ||
+            bb.getLong() != attrs.size() ||
+            bb.getLong() != attrs.lastModifiedTime().toMillis()) {
+            return null;
+        }
+        byte[] p = new byte[bb.getInt()];
+        bb.get(p);
+        if (!Arrays.equals(p, path)) {
+            return null;            // hash collision with another file
+        }
+        Index index = new Index();
+        index.cenpos = bb.getLong();
+        index.cenlen = bb.getInt();
+        index.locpos = bb.getLong();
+        index.total = bb.getInt();
+        index.tablelen = bb.getInt();
+        index.comment = getBytes(bb);
+        index.entries = getInts(bb);
+        index.table = getInts(bb);
+        if (index.entries == null || index.table == null ||
+            index.entries.length != index.total * 3 ||
+            index.table.length != index.tablelen) {
+            return null;
+        }
+        return index;
+    }
+
+    private static void store0(File file, BasicFileAttributes attrs,
+                               Index index)
+        throws IOException
+    {
+        byte[] path = pathOf(file);
+        int size = 4 + 4 + 8 + 8 + 4 + path.length
+                 + 8 + 4 + 8 + 4 + 4
+                 + sizeOf(index.comment)
+                 + sizeOf(index.entries) + sizeOf(index.table);
+        ByteBuffer bb = ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+        bb.putInt(MAGIC).putInt(VERSION)
+          .putLong(attrs.size())
+          .putLong(attrs.lastModifiedTime().toMillis())
+          .putInt(path.length).put(path)
+          .putLong(index.cenpos).putInt(index.cenlen)
+          .putLong(index.locpos)
+          .putInt(index.total).putInt(index.tablelen);
+        putBytes(bb, index.comment);
+        putInts(bb, index.entries);
+        putInts(bb, index.table);
+        bb.flip();
+
+        // write to a temporary file and rename it, so that a concurrent
+        // reader never sees a partially written index
+        Files.createDirectories(dir);
+        Path idx = indexFile(path);
+        Path tmp = Files.createTempFile(dir, "zix", ".tmp");
+        try {
+            try (FileChannel fc = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (bb.hasRemaining()) {
+                    fc.write(bb);
+                }
+            }
+            Files.move(tmp, idx, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static int sizeOf(byte[] a) {
+        return 4 + (a == null ? 0 : a.length);
+    }
+
+    private static int sizeOf(int[] a) {
+        return 4 + (a == null ? 0 : a.length * 4);
+    }
+
+    // a length of -1 stands for null
+    private static void putBytes(ByteBuffer bb, byte[] a) {
+        if (a == null) {
+            bb.putInt(-1);
+        } else {
+            bb.putInt(a.length).put(a);
+        }
+    }
+
+    private static void putInts(ByteBuffer bb, int[] a) {
+        if (a == null) {
+            bb.putInt(-1);
+        } else {
+            bb.putInt(a.length);
+            bb.asIntBuffer().put(a);
+            bb.position(bb.position() + a.length * 4);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer bb) {
+        int n = bb.getInt();
+        if (n < 0) {
+            return null;
+        }
+        byte[] a = new byte[n];
+        bb.get(a);
+        return a;
+    }
+
+    private static int[] getInts(ByteBuffer bb) {
+        int n = bb.getInt();
+        if (n < 0) {
+            return null;
+        }
+        int[] a = new int[n];
+        bb.asIntBuffer().get(a);
+        bb.position(bb.position() + n * 4);
+        return a;
+    }
+}
@@ -49,10 +49,12 @@ import java.security.cert.Certificate;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -88,6 +90,7 @@ public class URLClassPath {
     private static final boolean DEBUG;
     private static final boolean DISABLE_JAR_CHECKING;
     private static final boolean DISABLE_ACC_CHECKING;
+    private static final boolean PACKAGE_INDEX;
 
     static {
         Properties props = GetPropertyAction.privilegedGetProperties();
@@ -98,6 +101,9 @@ public class URLClassPath {
 
         p = props.getProperty("jdk.net.URLClassPath.disableRestrictedPermissions");
         DISABLE_ACC_CHECKING = p != null ? p.equals("true") || p.equals("") : false;
+
+        p = props.getProperty("jdk.net.URLClassPath.enablePackageIndex");
+        PACKAGE_INDEX = p != null ? p.equals("true") || p.equals("") : false;
     }
 
     /* The original search path of URLs. */
@@ -112,6 +118,13 @@ public class URLClassPath {
     /* Map of each URL opened to its corresponding Loader */
     private final HashMap<String, Loader> lmap = new HashMap<>();
 
+    /* If PACKAGE_INDEX is enabled, the positions in loaders of the Loaders
+     * that have resources in each package. Loaders whose resources are not
+     * known up front are in unindexedLoaders and are searched for every
+     * resource. Guarded by this URLClassPath. */
+    private final HashMap<String, BitSet> packageIndex = new HashMap<>();
+    private final BitSet unindexedLoaders = new BitSet();
+
     /* The jar protocol handler to use when creating new URLs */
     private final URLStreamHandler jarHandler;
 
@@ -278,7 +291,8 @@ public class URLClassPath {
      */
     public URL findResource(String name, boolean check) {
         Loader loader;
-        for (int i = 0; (loader = getLoader(i)) != null; i++) {
+        for (int i = 0; (i = nextLoader(name, i)) >= 0
+                        && (loader = getLoader(i)) != null; i++) {
             URL url = loader.findResource(name, check);
             if (url != null) {
                 return url;
@@ -301,7 +315,8 @@ public class URLClassPath {
         }
 
         Loader loader;
-        for (int i = 0; (loader = getLoader(i)) != null; i++) {
+        for (int i = 0; (i = nextLoader(name, i)) >= 0
+                        && (loader = getLoader(i)) != null; i++) {
             Resource res = loader.getResource(name, check);
             if (res != null) {
                 return res;
@@ -328,7 +343,8 @@ public class URLClassPath {
                     return true;
                 } else {
                     Loader loader;
-                    while ((loader = getLoader(index++)) != null) {
+                    while ((index = nextLoader(name, index)) >= 0
+                           && (loader = getLoader(index++)) != null) {
                         url = loader.findResource(name, check);
                         if (url != null) {
                             return true;
@@ -375,7 +391,8 @@ public class URLClassPath {
                     return true;
                 } else {
                     Loader loader;
-                    while ((loader = getLoader(index++)) != null) {
+                    while ((index = nextLoader(name, index)) >= 0
+                           && (loader = getLoader(index++)) != null) {
                         res = loader.getResource(name, check);
                         if (res != null) {
                             return true;
@@ -404,6 +421,61 @@ public class URLClassPath {
         return getResources(name, true);
     }
 
+    /*
+     * Returns the position of the first Loader, at or after the specified
+     * position in the URL search path, that needs to be searched for the
+     * named resource, or -1 if there is none. Unless the package index is
+     * enabled, this is the specified position itself.
+     */
+    private int nextLoader(String name, int index) {
+        if (!PACKAGE_INDEX || index < 0) {
+            return index;
+        }
+        String pkg = packageName(name);
+        synchronized (this) {
+            // Open all URLs, so that the index covers the whole search path
+            while (getLoader(loaders.size()) != null) {}
+
+            int next = unindexedLoaders.nextSetBit(index);
+            BitSet bits = packageIndex.get(pkg);
+            if (bits != null) {
+                int i = bits.nextSetBit(index);
+                if (i >= 0 && (next < 0 || i < next)) {
+                    next = i;
+                }
+            }
+            return next;
+        }
+    }
+
+    /*
+     * Adds the packages of the Loader at the specified position to the
+     * package index.
+     */
+    private void indexLoader(Loader loader, int index) {
+        Set<String> packages = loader.getPackages();
+        if (packages == null) {
+            unindexedLoaders.set(index);
+            return;
+        }
+        for (String pkg : packages) {
+            BitSet bits = packageIndex.get(pkg);
+            if (bits == null) {
+                bits = new BitSet();
+                packageIndex.put(pkg, bits);
+            }
+            bits.set(index);
+        }
+    }
+
+    /*
+     * Returns the package, that is the directory part, of a resource name.
+     */
+    private static String packageName(String name) {
+        int i = name.lastIndexOf('/');
+        return (i < 0) ? "" : name.substring(0, i);
+    }
+
     /*
      * Returns the Loader at the specified position in the URL search
      * path. The URLs are opened and expanded as needed. Returns null
@@ -454,6 +526,9 @@ public class URLClassPath {
             // Finally, add the Loader to the search path.
             loaders.add(loader);
             lmap.put(urlNoFragString, loader);
+            if (PACKAGE_INDEX) {
+                indexLoader(loader, loaders.size() - 1);
+            }
         }
         return loaders.get(index);
     }
@@ -682,6 +757,15 @@ public class URLClassPath {
         URL[] getClassPath() throws IOException {
             return null;
         }
+
+        /*
+         * Returns the packages of all resources of this loader, or null if
+         * they are not known and the loader must be searched for every
+         * resource.
+         */
+        Set<String> getPackages() {
+            return null;
+        }
     }
 
     /*
@@ -697,6 +781,7 @@ public class URLClassPath {
         private boolean closed = false;
         private static final JavaUtilZipFileAccess zipAccess =
                 SharedSecrets.getJavaUtilZipFileAccess();
+        private static final String META_INF_VERSIONS = "META-INF/versions/";
 
         /*
          * Creates a new JarLoader for the specified URL referring to
@@ -809,6 +894,37 @@ public class URLClassPath {
             return checkJar(jarFile);
         }
 
+        /*
+         * Returns the packages of the entries in this jar, including those
+         * of versioned entries of a multi-release jar, or null if this jar
+         * has a JarIndex and may find resources in other jars.
+         */
+        @Override
+        Set<String> getPackages() {
+            if (getIndex() != null) {
+                return null;
+            }
+            boolean multiRelease = jar.isMultiRelease();
+            HashSet<String> packages = new HashSet<>();
+            Iterator<String> names = zipAccess.entryNameStream(jar).iterator();
+            while (names.hasNext()) {
+                String name = names.next();
+                if (multiRelease && name.startsWith(META_INF_VERSIONS)) {
+                    int i = name.indexOf('/', META_INF_VERSIONS.length());
+                    if (i < 0) {
+                        continue;
+                    }
+                    name = name.substring(i + 1);
+                }
+                packages.add(packageName(name));
+                // "a/b/" may be looked up as "a/b"
+                if (name.endsWith("/")) {
+                    packages.add(packageName(name.substring(0, name.length() - 1)));
+                }
+            }
+            return packages;
+        }
+
         /*
          * Returns the index of this JarLoader if it exists.
          */
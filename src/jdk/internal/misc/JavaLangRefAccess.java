@@ -25,6 +25,9 @@
 
 package jdk.internal.misc;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+
 public interface JavaLangRefAccess {
 
     /**
@@ -43,4 +46,24 @@ public interface JavaLangRefAccess {
      * Invoked by Runtime.runFinalization()
      */
     void runFinalization();
+
+    /**
+     * Removes up to {@code refs.length} references from the queue,
+     * blocking until at least one is available or the timeout expires.
+     *
+     * @param queue the queue
+     * @param refs the array to fill
+     * @param timeout the timeout in milliseconds, or zero to wait forever
+     * @return the number of references removed
+     */
+    int remove(ReferenceQueue<?> queue, Reference<?>[] refs, long timeout)
+        throws InterruptedException;
+
+    /**
+     * Returns the number of references in the queue.
+     *
+     * @param queue the queue
+     * @return the number of references in the queue
+     */
+    long queueLength(ReferenceQueue<?> queue);
 }
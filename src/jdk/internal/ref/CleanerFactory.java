@@ -31,6 +31,8 @@ import java.lang.ref.Cleaner;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import sun.security.action.GetPropertyAction;
 
 /**
  * CleanerFactory provides a Cleaner for use within system modules.
@@ -38,20 +40,53 @@ import java.util.concurrent.ThreadFactory;
  */
 public final class CleanerFactory {
 
-    /* The common Cleaner. */
-    private final static Cleaner commonCleaner = Cleaner.create(new ThreadFactory() {
+    /*
+     * The number of threads running the common Cleaner's cleaning actions.
+     * With more than one, the threads share the Cleaner's queue, each
+     * removing Cleanables in batches.
+     */
+    private final static int commonCleanerThreads;
+    static {
+        int n = 1;
+        String s = GetPropertyAction.privilegedGetProperty(
+                "jdk.internal.ref.commonCleanerThreads");
+        if (s != null) {
+            try {
+                n = Math.max(1, Integer.parseInt(s));
+            } catch (NumberFormatException e) {
+                // use the default
+            }
+        }
+        commonCleanerThreads = n;
+    }
+
+    /* The thread factory for the common Cleaner's threads. */
+    private final static ThreadFactory commonCleanerThreadFactory = new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
         @Override
         public Thread newThread(Runnable r) {
+            int i = threadNumber.getAndIncrement();
+            String name = (i == 0) ? "Common-Cleaner" : "Common-Cleaner-" + i;
             return AccessController.doPrivileged(new PrivilegedAction<>() {
                 @Override
                 public Thread run() {
-                    Thread t = InnocuousThread.newSystemThread("Common-Cleaner", r);
+                    Thread t = InnocuousThread.newSystemThread(name, r);
                     t.setPriority(Thread.MAX_PRIORITY - 2);
                     return t;
                 }
             });
         }
-    });
+    };
+
+    /* The common Cleaner. */
+    private final static Cleaner commonCleaner = Cleaner.create(commonCleanerThreadFactory);
+    static {
+        if (commonCleanerThreads > 1) {
+            CleanerImpl.getCleanerImpl(commonCleaner)
+                    .startWorkers(commonCleanerThreads - 1, commonCleanerThreadFactory);
+        }
+    }
 
     /**
      * Cleaner for use within system modules.
@@ -65,4 +100,36 @@ public final class CleanerFactory {
     public static Cleaner cleaner() {
         return commonCleaner;
     }
+
+    /**
+     * Returns an estimate of the number of cleaning actions of the common
+     * Cleaner whose objects have become unreachable but that have not yet
+     * been run.
+     *
+     * @return the number of pending cleaning actions
+     */
+    public static long commonCleanerBacklog() {
+        return CleanerImpl.getCleanerImpl(commonCleaner).backlog();
+    }
+
+    /**
+     * Returns the number of cleaning actions run by the common Cleaner's
+     * threads.
+     *
+     * @return the number of cleaning actions run
+     */
+    public static long commonCleanerCleanedCount() {
+        return CleanerImpl.getCleanerImpl(commonCleaner).cleanedCount();
+    }
+
+    /**
+     * Returns the number of threads running the common Cleaner's
+     * cleaning actions, set by the system property
+     * {@code jdk.internal.ref.commonCleanerThreads} (default 1).
+     *
+     * @return the number of common Cleaner threads
+     */
+    public static int commonCleanerThreads() {
+        return commonCleanerThreads;
+    }
 }
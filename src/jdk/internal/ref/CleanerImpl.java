@@ -27,14 +27,18 @@ package jdk.internal.ref;
 
 import java.lang.ref.Cleaner;
 import java.lang.ref.Cleaner.Cleanable;
+import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import jdk.internal.misc.InnocuousThread;
+import jdk.internal.misc.JavaLangRefAccess;
+import jdk.internal.misc.SharedSecrets;
 
 /**
  * CleanerImpl manages a set of object references and corresponding cleaning actions.
@@ -59,6 +63,18 @@ public final class CleanerImpl implements Runnable {
     // The ReferenceQueue of pending cleaning actions
     final ReferenceQueue<Object> queue;
 
+    /**
+     * The maximum number of Cleanables a thread removes from the queue
+     * at a time.
+     */
+    static final int BATCH_SIZE = 32;
+
+    // The number of Cleanables removed from the queue and not yet cleaned
+    private final AtomicLong inProgress = new AtomicLong();
+
+    // The number of Cleanables cleaned by this cleaner's threads
+    private final AtomicLong cleaned = new AtomicLong();
+
     /**
      * Called by Cleaner static initialization to provide the function
      * to map from Cleaner to CleanerImpl.
@@ -118,6 +134,41 @@ public final class CleanerImpl implements Runnable {
         thread.start();
     }
 
+    /**
+     * Starts additional threads processing this cleaner's queue.
+     * Each thread removes and cleans Cleanables in batches of up to
+     * {@link #BATCH_SIZE} and runs until all cleaning actions have been
+     * run, like the thread started by {@link #start}.
+     * @param count the number of threads to start
+     * @param threadFactory the thread factory
+     */
+    void startWorkers(int count, ThreadFactory threadFactory) {
+        for (int i = 0; i < count; i++) {
+            Thread thread = threadFactory.newThread(this);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Returns an estimate of the number of cleaning actions whose objects
+     * have become unreachable but that have not yet been run.
+     * @return the number of pending cleaning actions
+     */
+    public long backlog() {
+        JavaLangRefAccess jlra = SharedSecrets.getJavaLangRefAccess();
+        return jlra.queueLength(queue) + inProgress.get();
+    }
+
+    /**
+     * Returns the number of cleaning actions run by this cleaner's threads.
+     * Cleanables cleaned explicitly by application threads are not counted.
+     * @return the number of cleaning actions run
+     */
+    public long cleanedCount() {
+        return cleaned.get();
+    }
+
     /**
      * Process queued Cleanables as long as the cleanable lists are not empty.
      * A Cleanable is in one of the lists for each Object and for the Cleaner
@@ -125,6 +176,9 @@ public final class CleanerImpl implements Runnable {
      * Terminates when the Cleaner is no longer reachable and
      * has been cleaned and there are no more Cleanable instances
      * for which the object is reachable.
+     * Cleanables are removed from the queue in batches of up to
+     * {@link #BATCH_SIZE}, so that several threads may share the queue
+     * without contending for it on every Cleanable.
      * <p>
      * If the thread is a ManagedLocalsThread, the threadlocals
      * are erased before each cleanup
@@ -135,24 +189,36 @@ public final class CleanerImpl implements Runnable {
         InnocuousThread mlThread = (t instanceof InnocuousThread)
                 ? (InnocuousThread) t
                 : null;
+        JavaLangRefAccess jlra = SharedSecrets.getJavaLangRefAccess();
+        Reference<?>[] batch = new Reference<?>[BATCH_SIZE];
         while (!phantomCleanableList.isListEmpty() ||
                 !weakCleanableList.isListEmpty() ||
                 !softCleanableList.isListEmpty()) {
-            if (mlThread != null) {
-                // Clear the thread locals
-                mlThread.eraseThreadLocals();
-            }
+            int n;
             try {
-                // Wait for a Ref, with a timeout to avoid getting hung
+                // Wait for Refs, with a timeout to avoid getting hung
                 // due to a race with clear/clean
-                Cleanable ref = (Cleanable) queue.remove(60 * 1000L);
-                if (ref != null) {
+                n = jlra.remove(queue, batch, 60 * 1000L);
+            } catch (Throwable e) {
+                // ignore interruption of cleanup thread
+                continue;
+            }
+            inProgress.addAndGet(n);
+            for (int i = 0; i < n; i++) {
+                Cleanable ref = (Cleanable) batch[i];
+                batch[i] = null;
+                if (mlThread != null) {
+                    // Clear the thread locals
+                    mlThread.eraseThreadLocals();
+                }
+                try {
                     ref.clean();
+                } catch (Throwable e) {
+                    // ignore exceptions from the cleanup action
                 }
-            } catch (Throwable e) {
-                // ignore exceptions from the cleanup action
-                // (including interruption of cleanup thread)
             }
+            cleaned.addAndGet(n);
+            inProgress.addAndGet(-n);
         }
     }
 
@@ -33,9 +33,10 @@ import java.net.URL;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import jdk.internal.misc.InnocuousThread;
 import sun.security.action.GetIntegerAction;
@@ -43,11 +44,17 @@ import sun.security.action.GetIntegerAction;
 /**
  * A class that implements a cache of idle Http connections for keep-alive
  *
+ * The cache is a concurrent map from destination to a per-destination
+ * ClientVector; lookups only lock the vector of the destination being
+ * used. Idle connections are reused most-recently-idle first, and are
+ * closed by the "Keep-Alive-Timer" thread, which sleeps until the next
+ * connection is due to time out rather than for a fixed period.
+ *
  * @author Stephen R. Pietrowicz (NCSA)
  * @author Dave Brown
  */
 public class KeepAliveCache
-    extends HashMap<KeepAliveKey, ClientVector>
+    extends ConcurrentHashMap<KeepAliveKey, ClientVector>
     implements Runnable {
     private static final long serialVersionUID = -2937172892064557949L;
 
@@ -71,10 +78,45 @@ public class KeepAliveCache
         return result;
     }
 
+    /* maximum # idle keep-alive connections over all destinations.
+     * The default of 0 means no limit other than the per-destination one.
+     * It can be set with the system property "http.maxTotalConnections".
+     * When it is reached, the connection that has been idle longest is
+     * closed to make room for the one being returned.
+     */
+    static final int MAX_TOTAL_CONNECTIONS;
+    static {
+        int n = AccessController.doPrivileged(
+            new GetIntegerAction("http.maxTotalConnections", 0)).intValue();
+        MAX_TOTAL_CONNECTIONS = n > 0 ? n : 0;
+    }
+
     static final int LIFETIME = 5000;
 
     private Thread keepAliveTimer = null;
 
+    // guards keepAliveTimer and nextExpiry; the timer thread waits on it
+    private final Object timerLock = new Object();
+
+    // time at which the timer thread will next wake up, or Long.MAX_VALUE
+    private long nextExpiry = Long.MAX_VALUE;
+
+    // number of idle connections over all destinations
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    // with a global limit, the idle connections over all destinations in
+    // the order they became idle, and the approximate length of the queue.
+    // Connections that have left the cache are skipped when polled, and
+    // swept out when they outnumber the idle ones.
+    private final ConcurrentLinkedQueue<KeepAliveEntry> idleOrder =
+        new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleOrderLength = new AtomicInteger();
+
+    // statistics
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
     /**
      * Constructor
      */
@@ -85,119 +127,200 @@ public class KeepAliveCache
      * @param url  The URL contains info about the host and port
      * @param http The HttpClient to be cached
      */
-    public synchronized void put(final URL url, Object obj, HttpClient http) {
-        boolean startThread = (keepAliveTimer == null);
-        if (!startThread) {
-            if (!keepAliveTimer.isAlive()) {
-                startThread = true;
-            }
-        }
-        if (startThread) {
-            clear();
-            /* Unfortunately, we can't always believe the keep-alive timeout we got
-             * back from the server.  If I'm connected through a Netscape proxy
-             * to a server that sent me a keep-alive
-             * time of 15 sec, the proxy unilaterally terminates my connection
-             * The robustness to get around this is in HttpClient.parseHTTP()
-             */
-            final KeepAliveCache cache = this;
-            AccessController.doPrivileged(new PrivilegedAction<>() {
-                public Void run() {
-                    keepAliveTimer = InnocuousThread.newSystemThread("Keep-Alive-Timer", cache);
-                    keepAliveTimer.setDaemon(true);
-                    keepAliveTimer.setPriority(Thread.MAX_PRIORITY - 2);
-                    keepAliveTimer.start();
-                    return null;
+    public void put(final URL url, Object obj, HttpClient http) {
+        KeepAliveKey key = new KeepAliveKey(url, obj);
+        long expiry;
+        do {
+            ClientVector v = super.get(key);
+            if (v == null) {
+                int keepAliveTimeout = http.getKeepAliveTimeout();
+                v = new ClientVector(this, key, keepAliveTimeout > 0 ?
+                                     keepAliveTimeout * 1000 : LIFETIME);
+                ClientVector prev = super.putIfAbsent(key, v);
+                if (prev != null) {
+                    v = prev;
                 }
-            });
+            }
+            // a vector emptied by the timer is discarded; retry with a new one
+            expiry = v.put(http);
+        } while (expiry == 0);
+
+        if (expiry > 0) {
+            if (MAX_TOTAL_CONNECTIONS > 0) {
+                // the connection just cached is the most likely to be
+                // reused, so evict the ones that have been idle longest
+                evictOldest();
+            }
+            scheduleExpiry(expiry);
         }
+    }
 
-        KeepAliveKey key = new KeepAliveKey(url, obj);
-        ClientVector v = super.get(key);
-
-        if (v == null) {
-            int keepAliveTimeout = http.getKeepAliveTimeout();
-            v = new ClientVector(keepAliveTimeout > 0 ?
-                                 keepAliveTimeout * 1000 : LIFETIME);
-            v.put(http);
-            super.put(key, v);
-        } else {
-            v.put(http);
+    /* Closes the connections that have been idle longest over all
+     * destinations until the global limit is no longer exceeded.
+     */
+    private void evictOldest() {
+        KeepAliveEntry e;
+        while (idleCount.get() > MAX_TOTAL_CONNECTIONS &&
+               (e = idleOrder.poll()) != null) {
+            idleOrderLength.decrementAndGet();
+            e.vector.evict(e); // no-op if it has already left the cache
         }
     }
 
     /* remove an obsolete HttpClient from its VectorCache */
-    public synchronized void remove(HttpClient h, Object obj) {
+    public void remove(HttpClient h, Object obj) {
         KeepAliveKey key = new KeepAliveKey(h.url, obj);
         ClientVector v = super.get(key);
         if (v != null) {
             v.remove(h);
-            if (v.isEmpty()) {
-                removeVector(key);
-            }
         }
     }
 
-    /* called by a clientVector thread when all its connections have timed out
-     * and that vector of connections should be removed.
+    /* called by a clientVector when it has become empty and that vector
+     * of connections should be removed.
      */
-    synchronized void removeVector(KeepAliveKey k) {
-        super.remove(k);
+    void removeVector(KeepAliveKey k, ClientVector v) {
+        super.remove(k, v);
     }
 
     /**
      * Check to see if this URL has a cached HttpClient
      */
-    public synchronized HttpClient get(URL url, Object obj) {
+    public HttpClient get(URL url, Object obj) {
         KeepAliveKey key = new KeepAliveKey(url, obj);
         ClientVector v = super.get(key);
-        if (v == null) { // nothing in cache yet
-            return null;
+        HttpClient hc = (v == null) ? null : v.get();
+        if (hc == null) {
+            misses.increment();
+        } else {
+            hits.increment();
         }
-        return v.get();
+        return hc;
+    }
+
+    /**
+     * Returns the number of lookups that found an idle connection.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that found no idle connection.
+     */
+    public long getMissCount() {
+        return misses.sum();
     }
 
-    /* Sleeps for an alloted timeout, then checks for timed out connections.
-     * Errs on the side of caution (leave connections idle for a relatively
-     * short time).
+    /**
+     * Returns the number of idle connections closed because they timed
+     * out or because a per-destination or global limit was reached.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of idle connections currently cached.
+     */
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    void idleAdded(KeepAliveEntry e) {
+        int idle = idleCount.incrementAndGet();
+        if (MAX_TOTAL_CONNECTIONS > 0) {
+            idleOrder.offer(e);
+            if (idleOrderLength.incrementAndGet() > 2 * idle + 16) {
+                idleOrder.removeIf(x -> x.removed);
+                idleOrderLength.set(idleCount.get());
+            }
+        }
+    }
+
+    void idleRemoved(boolean evicted) {
+        idleCount.decrementAndGet();
+        if (evicted) {
+            evictions.increment();
+        }
+    }
+
+    void evicted() {
+        evictions.increment();
+    }
+
+    /* Makes sure the timer thread is running and wakes up no later than
+     * the given time.
+     */
+    private void scheduleExpiry(long expiry) {
+        synchronized (timerLock) {
+            if (keepAliveTimer == null) {
+                nextExpiry = expiry;
+                /* Unfortunately, we can't always believe the keep-alive timeout we got
+                 * back from the server.  If I'm connected through a Netscape proxy
+                 * to a server that sent me a keep-alive
+                 * time of 15 sec, the proxy unilaterally terminates my connection
+                 * The robustness to get around this is in HttpClient.parseHTTP()
+                 */
+                final KeepAliveCache cache = this;
+                AccessController.doPrivileged(new PrivilegedAction<>() {
+                    public Void run() {
+                        keepAliveTimer = InnocuousThread.newSystemThread("Keep-Alive-Timer", cache);
+                        keepAliveTimer.setDaemon(true);
+                        keepAliveTimer.setPriority(Thread.MAX_PRIORITY - 2);
+                        keepAliveTimer.start();
+                        return null;
+                    }
+                });
+            } else if (expiry < nextExpiry) {
+                nextExpiry = expiry;
+                timerLock.notify();
+            }
+        }
+    }
+
+    /* Sleeps until the next connection is due to time out, then closes
+     * all timed out connections. Errs on the side of caution (leave
+     * connections idle for a relatively short time). Exits when the
+     * cache is empty; put() starts a new timer thread when needed.
      */
     @Override
     public void run() {
-        do {
-            try {
-                Thread.sleep(LIFETIME);
-            } catch (InterruptedException e) {}
+        while (true) {
+            synchronized (timerLock) {
+                long delay;
+                while ((delay = nextExpiry - System.currentTimeMillis()) > 0) {
+                    try {
+                        timerLock.wait(delay);
+                    } catch (InterruptedException e) {}
+                }
+                nextExpiry = Long.MAX_VALUE;
+            }
 
             // Remove all outdated HttpClients.
-            synchronized (this) {
-                long currentTime = System.currentTimeMillis();
-                List<KeepAliveKey> keysToRemove = new ArrayList<>();
-
-                for (KeepAliveKey key : keySet()) {
-                    ClientVector v = get(key);
-                    synchronized (v) {
-                        KeepAliveEntry e = v.peek();
-                        while (e != null) {
-                            if ((currentTime - e.idleStartTime) > v.nap) {
-                                v.poll();
-                                e.hc.closeServer();
-                            } else {
-                                break;
-                            }
-                            e = v.peek();
-                        }
-
-                        if (v.isEmpty()) {
-                            keysToRemove.add(key);
-                        }
-                    }
-                }
+            long currentTime = System.currentTimeMillis();
+            long next = Long.MAX_VALUE;
+            for (ClientVector v : values()) {
+                next = Math.min(next, v.expire(currentTime));
+            }
 
-                for (KeepAliveKey key : keysToRemove) {
-                    removeVector(key);
+            synchronized (timerLock) {
+                if (next < nextExpiry) {
+                    nextExpiry = next;
+                }
+                if (nextExpiry == Long.MAX_VALUE) {
+                    // put() adds to the map before calling scheduleExpiry,
+                    // so an idle connection added after this check starts
+                    // a new timer thread
+                    if (isEmpty()) {
+                        keepAliveTimer = null;
+                        return;
+                    }
+                    // vectors emptied by get() since the scan
+                    nextExpiry = System.currentTimeMillis() + LIFETIME;
                 }
             }
-        } while (!isEmpty());
+        }
     }
 
     /*
@@ -216,14 +339,25 @@ public class KeepAliveCache
 
 /* FILO order for recycling HttpClients, should run in a thread
  * to time them out.  If > maxConns are in use, block.
+ *
+ * The most recently idle connection is at the head of the deque and the
+ * one that will time out first is at the tail.
  */
 class ClientVector extends ArrayDeque<KeepAliveEntry> {
     private static final long serialVersionUID = -8680532108106489459L;
 
+    private final transient KeepAliveCache cache;
+    private final transient KeepAliveKey key;
+
+    // set once this vector has been emptied and removed from the cache
+    private boolean removed;
+
     // sleep time in milliseconds, before cache clear
     int nap;
 
-    ClientVector(int nap) {
+    ClientVector(KeepAliveCache cache, KeepAliveKey key, int nap) {
+        this.cache = cache;
+        this.key = key;
         this.nap = nap;
     }
 
@@ -237,21 +371,37 @@ class ClientVector extends ArrayDeque<KeepAliveEntry> {
         long currentTime = System.currentTimeMillis();
         do {
             KeepAliveEntry e = pop();
+            e.removed = true;
             if ((currentTime - e.idleStartTime) > nap) {
+                cache.idleRemoved(true);
                 e.hc.closeServer();
             } else {
+                cache.idleRemoved(false);
                 hc = e.hc;
             }
         } while ((hc == null) && (!isEmpty()));
         return hc;
     }
 
-    /* return a still valid, unused HttpClient */
-    synchronized void put(HttpClient h) {
+    /* return a still valid, unused HttpClient.
+     * Returns the time at which it times out, -1 if it was closed
+     * instead, or 0 if this vector has already been removed from the
+     * cache and the caller should retry with a new one.
+     */
+    synchronized long put(HttpClient h) {
+        if (removed) {
+            return 0;
+        }
         if (size() >= KeepAliveCache.getMaxConnections()) {
+            cache.evicted();
             h.closeServer(); // otherwise the connection remains in limbo
+            return -1;
         } else {
-            push(new KeepAliveEntry(h, System.currentTimeMillis()));
+            long now = System.currentTimeMillis();
+            KeepAliveEntry e = new KeepAliveEntry(this, h, now);
+            push(e);
+            cache.idleAdded(e);
+            return now + nap;
         }
     }
 
@@ -259,12 +409,59 @@ class ClientVector extends ArrayDeque<KeepAliveEntry> {
     synchronized boolean remove(HttpClient h) {
         for (KeepAliveEntry curr : this) {
             if (curr.hc == h) {
-                return super.remove(curr);
+                super.remove(curr);
+                curr.removed = true;
+                cache.idleRemoved(false);
+                return true;
             }
         }
         return false;
     }
 
+    /* close the given connection, if still idle in this vector, to make
+     * room in the cache. Only the timer removes an emptied vector.
+     */
+    synchronized void evict(KeepAliveEntry e) {
+        if (!e.removed) {
+            // usually the oldest one in this vector
+            removeLastOccurrence(e);
+            e.removed = true;
+            cache.idleRemoved(true);
+            e.hc.closeServer();
+        }
+    }
+
+    /* close the connections that have timed out, oldest first, and
+     * remove this vector from the cache if it is left empty.
+     * Returns the time at which the next one times out, or
+     * Long.MAX_VALUE if there are none left.
+     */
+    synchronized long expire(long currentTime) {
+        KeepAliveEntry e;
+        while ((e = peekLast()) != null) {
+            if ((currentTime - e.idleStartTime) > nap) {
+                pollLast();
+                e.removed = true;
+                cache.idleRemoved(true);
+                e.hc.closeServer();
+            } else {
+                return e.idleStartTime + nap + 1;
+            }
+        }
+        removeIfEmpty();
+        return Long.MAX_VALUE;
+    }
+
+    /* only the timer removes vectors, so that a destination that is
+     * constantly used does not allocate a new vector on every put
+     */
+    private void removeIfEmpty() {
+        if (isEmpty() && !removed) {
+            removed = true;
+            cache.removeVector(key, this);
+        }
+    }
+
     /*
      * Do not serialize this class!
      */
@@ -324,10 +521,15 @@ class KeepAliveKey {
 }
 
 class KeepAliveEntry {
+    final ClientVector vector;
     HttpClient hc;
     long idleStartTime;
 
-    KeepAliveEntry(HttpClient hc, long idleStartTime) {
+    // set, under the vector's lock, when the connection leaves the cache
+    volatile boolean removed;
+
+    KeepAliveEntry(ClientVector vector, HttpClient hc, long idleStartTime) {
+        this.vector = vector;
         this.hc = hc;
         this.idleStartTime = idleStartTime;
     }
@@ -458,6 +458,60 @@ class DatagramChannelImpl
         }
     }
 
+    @Override
+    public int receive(ByteBuffer[] dsts, SocketAddress[] sources,
+                       int offset, int length)
+        throws IOException
+    {
+        Objects.checkFromIndexSize(offset, length, dsts.length);
+        Objects.checkFromIndexSize(offset, length, sources.length);
+        for (int i = offset; i < offset + length; i++) {
+            if (dsts[i].isReadOnly())
+                throw new IllegalArgumentException("Read-only buffer");
+        }
+
+        readLock.lock();
+        try {
+            // Each datagram must be checked by the security manager when
+            // not connected; the connection state cannot change while the
+            // read lock is held
+            if (System.getSecurityManager() != null && !isConnected())
+                return super.receive(dsts, sources, offset, length);
+
+            boolean blocking = isBlocking();
+            int count = 0;
+            int n = 0;
+            try {
+                SocketAddress remote = beginRead(blocking, false);
+                boolean connected = (remote != null);
+                while (count < length) {
+                    // once one datagram has been received, only take those
+                    // that are immediately available
+                    if (count > 0 && blocking && Net.poll(fd, Net.POLLIN, 0) == 0)
+                        break;
+                    do {
+                        n = receive(fd, dsts[offset + count], connected);
+                    } while ((n == IOStatus.INTERRUPTED) && isOpen());
+                    if (n < 0)
+                        break;
+                    assert sender != null;
+                    sources[offset + count] = sender;
+                    count++;
+                }
+            } catch (IOException ioe) {
+                // Only throw exception if no datagrams have been received
+                if (count == 0)
+                    throw ioe;
+            } finally {
+                endRead(blocking, count > 0);
+                assert IOStatus.check(n);
+            }
+            return count;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
     private int receive(FileDescriptor fd, ByteBuffer dst, boolean connected)
         throws IOException
     {
@@ -539,6 +593,86 @@ class DatagramChannelImpl
         }
     }
 
+    @Override
+    public int send(ByteBuffer[] srcs, SocketAddress[] targets,
+                    int offset, int length)
+        throws IOException
+    {
+        Objects.checkFromIndexSize(offset, length, srcs.length);
+        Objects.checkFromIndexSize(offset, length, targets.length);
+        InetSocketAddress[] isas = new InetSocketAddress[length];
+        for (int i = 0; i < length; i++) {
+            Objects.requireNonNull(srcs[offset + i]);
+            isas[i] = Net.checkAddress(targets[offset + i], family);
+        }
+
+        writeLock.lock();
+        try {
+            // connect and disconnect hold the write lock, so the remote
+            // address cannot change while the datagrams are sent. Check
+            // every target first so that a rejected target does not leave
+            // the batch partially sent.
+            InetSocketAddress remote;
+            synchronized (stateLock) {
+                ensureOpen();
+                remote = remoteAddress;
+            }
+            if (remote != null) {
+                for (int i = 0; i < length; i++) {
+                    if (!targets[offset + i].equals(remote)) {
+                        throw new AlreadyConnectedException();
+                    }
+                }
+            } else {
+                SecurityManager sm = System.getSecurityManager();
+                if (sm != null) {
+                    for (InetSocketAddress isa : isas) {
+                        InetAddress ia = isa.getAddress();
+                        if (ia.isMulticastAddress()) {
+                            sm.checkMulticast(ia);
+                        } else {
+                            sm.checkConnect(ia.getHostAddress(), isa.getPort());
+                        }
+                    }
+                }
+            }
+
+            boolean blocking = isBlocking();
+            int count = 0;
+            int n = 0;
+            try {
+                beginWrite(blocking, false);
+                while (count < length) {
+                    ByteBuffer src = srcs[offset + count];
+                    if (remote != null) {
+                        // connected
+                        do {
+                            n = IOUtil.write(fd, src, -1, nd);
+                        } while ((n == IOStatus.INTERRUPTED) && isOpen());
+                    } else {
+                        // not connected
+                        do {
+                            n = send(fd, src, isas[count]);
+                        } while ((n == IOStatus.INTERRUPTED) && isOpen());
+                    }
+                    if (n < 0)
+                        break;
+                    count++;
+                }
+            } catch (IOException ioe) {
+                // Only throw exception if no datagrams have been sent
+                if (count == 0)
+                    throw ioe;
+            } finally {
+                endWrite(blocking, count > 0);
+                assert IOStatus.check(n);
+            }
+            return count;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
     private int send(FileDescriptor fd, ByteBuffer src, InetSocketAddress target)
         throws IOException
     {
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package sun.nio.ch;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.internal.misc.TerminatingThreadLocal;
+import jdk.internal.misc.VM;
+import sun.security.action.GetPropertyAction;
+
+/**
+ * A bounded pool of temporary direct buffers shared by all threads, used
+ * by {@link Util} in place of its per-thread buffer cache when the
+ * {@code jdk.nio.sharedBufferPool} system property is set to {@code true}.
+ *
+ * <p> Pooled buffers have power-of-two capacities from 4K to 16M, or to
+ * the largest power of two not above {@code jdk.nio.maxCachedBufferSize}
+ * if that is smaller. Each thread keeps a small magazine of the buffers
+ * of up to 64K it released last, holding at most 128K, and other buffers
+ * go to a shared depot with one stack per size class. Buffers held by
+ * magazines and the depot count towards a limit on retained bytes, set by
+ * the {@code jdk.nio.sharedBufferPool.maxRetained} system property, and a
+ * buffer released beyond the limit is freed. Buffers left in the magazine
+ * of a terminating thread are moved to the depot.
+ */
+public final class DirectBufferPool {
+
+    private DirectBufferPool() { }
+
+    // The smallest and largest size classes, as powers of two. The largest
+    // is below MIN_SHIFT if no size class fits in the max cached buffer size.
+    private static final int MIN_SHIFT = 12;
+    private static final int MAX_SHIFT = getMaxShift();
+    private static final int MAX_SIZE = 1 << MAX_SHIFT;
+
+    // Whether Util uses this pool
+    static final boolean ENABLED = Boolean.parseBoolean(
+        GetPropertyAction.privilegedGetProperty("jdk.nio.sharedBufferPool"))
+        && MAX_SHIFT >= MIN_SHIFT;
+
+    // The number of buffers in each thread's magazine, the largest size
+    // class kept there, and the max number of bytes a magazine holds
+    private static final int MAGAZINE_SIZE = 8;
+    private static final int MAGAZINE_MAX_CAPACITY = 1 << 16;
+    private static final int MAGAZINE_MAX_BYTES = 1 << 17;
+
+    // The max number of bytes of pooled buffers not in use
+    private static final long MAX_RETAINED = getMaxRetained();
+
+    // Per size class stacks of buffers, each guarded by its own monitor
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final ArrayDeque<ByteBuffer>[] depot =
+        new ArrayDeque[Math.max(MAX_SHIFT - MIN_SHIFT + 1, 0)];
+    static {
+        for (int i = 0; i < depot.length; i++)
+            depot[i] = new ArrayDeque<>();
+    }
+
+    private static final AtomicLong retained = new AtomicLong();
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    private static final ThreadLocal<Magazine> magazine =
+        new TerminatingThreadLocal<>() {
+            @Override
+            protected Magazine initialValue() {
+                return new Magazine();
+            }
+            @Override
+            protected void threadTerminated(Magazine m) {
+                ByteBuffer buf;
+                while ((buf = m.removeLast()) != null)
+                    push(buf);
+            }
+        };
+
+    /**
+     * Returns the shift of the largest size class, 16M or the largest power
+     * of two not above jdk.nio.maxCachedBufferSize, so that Util does not
+     * free a pooled buffer on release because it is too large to cache.
+     */
+    private static int getMaxShift() {
+        long max = Math.min(1L << 24, Util.maxCachedBufferSize());
+        return 63 - Long.numberOfLeadingZeros(max);
+    }
+
+    /**
+     * Returns the max number of bytes retained. It defaults to the smaller
+     * of 64M and a quarter of the max direct memory, and can be set with
+     * the jdk.nio.sharedBufferPool.maxRetained property.
+     */
+    private static long getMaxRetained() {
+        String s = GetPropertyAction
+                .privilegedGetProperty("jdk.nio.sharedBufferPool.maxRetained");
+        if (s != null) {
+            try {
+                long m = Long.parseLong(s);
+                if (m >= 0) {
+                    return m;
+                }
+            } catch (NumberFormatException e) {
+                // if the string is not well formed, ignore the system property
+            }
+        }
+        return Math.min(64L << 20, VM.maxDirectMemory() / 4);
+    }
+
+    /**
+     * A thread's most recently released small buffers. The magazine is
+     * bounded in bytes so that the buffers held by idle threads cannot
+     * take up much of the retained limit.
+     */
+    private static class Magazine {
+        private final ByteBuffer[] buffers = new ByteBuffer[MAGAZINE_SIZE];
+        private int count;
+        private int bytes;
+
+        /**
+         * Removes and returns the most recently added buffer with the
+         * given capacity, or null if there is none.
+         */
+        ByteBuffer take(int capacity) {
+            for (int i = count - 1; i >= 0; i--) {
+                ByteBuffer buf = buffers[i];
+                if (buf.capacity() == capacity) {
+                    System.arraycopy(buffers, i + 1, buffers, i, count - i - 1);
+                    buffers[--count] = null;
+                    bytes -= capacity;
+                    return buf;
+                }
+            }
+            return null;
+        }
+
+        boolean offer(ByteBuffer buf) {
+            int capacity = buf.capacity();
+            if (count == MAGAZINE_SIZE || capacity > MAGAZINE_MAX_CAPACITY
+                    || bytes + capacity > MAGAZINE_MAX_BYTES)
+                return false;
+            buffers[count++] = buf;
+            bytes += capacity;
+            return true;
+        }
+
+        ByteBuffer removeLast() {
+            if (count == 0)
+                return null;
+            ByteBuffer buf = buffers[--count];
+            buffers[count] = null;
+            bytes -= buf.capacity();
+            return buf;
+        }
+    }
+
+    private static int sizeClass(int size) {
+        if (size <= (1 << MIN_SHIFT))
+            return 0;
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    private static void push(ByteBuffer buf) {
+        ArrayDeque<ByteBuffer> stack = depot[sizeClass(buf.capacity())];
+        synchronized (stack) {
+            stack.push(buf);
+        }
+    }
+
+    /**
+     * Returns a buffer with position zero and limit {@code size}, taken
+     * from the pool if one of the right size class is available.
+     */
+    static ByteBuffer get(int size) {
+        if (size > MAX_SIZE) {
+            misses.increment();
+            return ByteBuffer.allocateDirect(size);
+        }
+        int c = sizeClass(size);
+        int capacity = 1 << (c + MIN_SHIFT);
+        ByteBuffer buf = magazine.get().take(capacity);
+        if (buf == null) {
+            ArrayDeque<ByteBuffer> stack = depot[c];
+            synchronized (stack) {
+                buf = stack.poll();
+            }
+        }
+        if (buf != null) {
+            retained.addAndGet(-capacity);
+            hits.increment();
+            buf.clear();
+        } else {
+            misses.increment();
+            buf = ByteBuffer.allocateDirect(capacity);
+        }
+        buf.limit(size);
+        return buf;
+    }
+
+    /**
+     * Returns a buffer to the pool, or frees it if it is not of a size
+     * class or the pool is full. Returns false, leaving the buffer alone,
+     * if it is a slice of another buffer and so was not obtained from
+     * {@link #get}.
+     */
+    static boolean release(ByteBuffer buf) {
+        if (((DirectBuffer)buf).attachment() != null)
+            return false;
+        int capacity = buf.capacity();
+        if (capacity > MAX_SIZE || capacity < (1 << MIN_SHIFT)
+                || Integer.bitCount(capacity) != 1) {
+            Util.free(buf);
+        } else if (retained.addAndGet(capacity) > MAX_RETAINED) {
+            retained.addAndGet(-capacity);
+            Util.free(buf);
+        } else if (!magazine.get().offer(buf)) {
+            push(buf);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of requests served with a pooled buffer.
+     */
+    public static long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of requests that allocated a new buffer.
+     */
+    public static long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the fraction of requests served with a pooled buffer, or
+     * zero if there have been no requests.
+     */
+    public static double hitRate() {
+        long h = hits.sum(), total = h + misses.sum();
+        return (total == 0L) ? 0.0 : (double)h / total;
+    }
+
+    /**
+     * Returns the total capacity, in bytes, of the pooled buffers that
+     * are not in use.
+     */
+    public static long retainedBytes() {
+        return retained.get();
+    }
+}
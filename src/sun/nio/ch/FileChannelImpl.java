@@ -42,12 +42,20 @@ import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import jdk.internal.misc.JavaIOFileDescriptorAccess;
 import jdk.internal.misc.JavaNioAccess;
 import jdk.internal.misc.SharedSecrets;
 import jdk.internal.ref.Cleaner;
 import jdk.internal.ref.CleanerFactory;
+import sun.security.action.GetPropertyAction;
 
 public class FileChannelImpl
     extends FileChannel
@@ -568,7 +576,147 @@ public class FileChannelImpl
     }
 
     // Maximum size to map when using a mapped buffer
-    private static final long MAPPED_TRANSFER_SIZE = 8L*1024L*1024L;
+    private static final long MAPPED_TRANSFER_SIZE = getMappedTransferSize();
+
+    // Whether mapped transfers between files map and load the next window
+    // while the current one is written
+    private static final boolean MAPPED_TRANSFER_PREFETCH =
+        Boolean.parseBoolean(GetPropertyAction
+            .privilegedGetProperty("jdk.nio.mappedTransferPrefetch"));
+
+    /**
+     * Returns the size of the windows mapped by mapped transfers. It
+     * defaults to 8M and can be set with the jdk.nio.mappedTransferSize
+     * property to a value between 64K and 1G.
+     */
+    private static long getMappedTransferSize() {
+        String s = GetPropertyAction
+                .privilegedGetProperty("jdk.nio.mappedTransferSize");
+        if (s != null) {
+            try {
+                long m = Long.parseLong(s);
+                return Math.max(64L*1024L, Math.min(m, 1024L*1024L*1024L));
+            } catch (NumberFormatException e) {
+                // if the string is not well formed, ignore the system property
+            }
+        }
+        return 8L*1024L*1024L;
+    }
+
+    // Daemon threads that load the window mapped ahead. MappedByteBuffer.load
+    // blocks on page faults, so it is kept off the common pool.
+    private static class PrefetchPoolHolder {
+        static final ExecutorService pool = new ThreadPoolExecutor(
+            0, Runtime.getRuntime().availableProcessors(),
+            60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            ThreadPool.defaultThreadFactory());
+    }
+
+    /**
+     * The successive windows of a region of a file mapped for a transfer.
+     * When prefetching, the window after the current one is mapped ahead
+     * and its pages are loaded by a prefetch thread while the current
+     * window is written, so that the writer finds them resident. A window
+     * is only unmapped once its load has completed.
+     */
+    private static final class MappedWindows {
+        private final FileChannelImpl src;
+        private final boolean prefetch;
+        private long position;      // position of the next window to map
+        private long remaining;     // bytes not yet mapped
+        private MappedByteBuffer current, next;
+        private Future<?> nextLoad;
+
+        MappedWindows(FileChannelImpl src, long position, long count,
+                      boolean prefetch) {
+            this.src = src;
+            this.position = position;
+            this.remaining = count;
+            this.prefetch = prefetch;
+        }
+
+        /**
+         * Unmaps the current window and returns the next one, or null if
+         * the whole region has been mapped.
+         */
+        MappedByteBuffer advance() throws IOException {
+            release();
+            if (next != null) {
+                current = next;
+                next = null;
+                if (nextLoad != null) {
+                    // wait for the prefetch task; it must finish before the
+                    // window is unmapped
+                    awaitLoad(nextLoad);
+                    nextLoad = null;
+                }
+            } else if ((current = mapNext()) == null) {
+                return null;
+            }
+            if (prefetch && remaining > 0L) {
+                MappedByteBuffer bb = next = mapNext();
+                try {
+                    nextLoad = PrefetchPoolHolder.pool.submit(() -> { bb.load(); });
+                } catch (RejectedExecutionException e) {
+                    // all prefetch threads busy, the window is paged in
+                    // when it is written
+                }
+            }
+            return current;
+        }
+
+        private MappedByteBuffer mapNext() throws IOException {
+            if (remaining <= 0L)
+                return null;
+            long size = Math.min(remaining, MAPPED_TRANSFER_SIZE);
+            MappedByteBuffer bb = src.map(MapMode.READ_ONLY, position, size);
+            position += size;
+            remaining -= size;
+            return bb;
+        }
+
+        private void release() {
+            if (current != null) {
+                unmap(current);
+                current = null;
+            }
+        }
+
+        /**
+         * Waits for a window to be loaded, as it must not be unmapped while
+         * it is being read. Interrupts are deferred until the load is done.
+         */
+        private static void awaitLoad(Future<?> load) {
+            boolean interrupted = false;
+            for (;;) {
+                try {
+                    load.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // loading is only a hint
+                    break;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+
+        /**
+         * Unmaps the current window and any window mapped ahead.
+         */
+        void close() {
+            release();
+            if (next != null) {
+                if (nextLoad != null)
+                    awaitLoad(nextLoad);
+                unmap(next);
+                next = null;
+                nextLoad = null;
+            }
+        }
+    }
 
     private long transferToTrustedChannel(long position, long count,
                                           WritableByteChannel target)
@@ -580,40 +728,39 @@ public class FileChannelImpl
 
         // Trusted target: Use a mapped buffer
         long remaining = count;
-        while (remaining > 0L) {
-            long size = Math.min(remaining, MAPPED_TRANSFER_SIZE);
-            try {
-                MappedByteBuffer dbb = map(MapMode.READ_ONLY, position, size);
-                try {
+        MappedWindows windows = new MappedWindows(this, position, count,
+            MAPPED_TRANSFER_PREFETCH && !isSelChImpl);
+        try {
+            MappedByteBuffer dbb;
+            while (remaining > 0L && (dbb = windows.advance()) != null) {
+                do {
                     // ## Bug: Closing this channel will not terminate the write
                     int n = target.write(dbb);
                     assert n >= 0;
                     remaining -= n;
                     if (isSelChImpl) {
                         // one attempt to write to selectable channel
-                        break;
+                        return count - remaining;
                     }
                     assert n > 0;
-                    position += n;
-                } finally {
-                    unmap(dbb);
-                }
-            } catch (ClosedByInterruptException e) {
-                // target closed by interrupt as ClosedByInterruptException needs
-                // to be thrown after closing this channel.
-                assert !target.isOpen();
-                try {
-                    close();
-                } catch (Throwable suppressed) {
-                    e.addSuppressed(suppressed);
-                }
-                throw e;
-            } catch (IOException ioe) {
-                // Only throw exception if no bytes have been written
-                if (remaining == count)
-                    throw ioe;
-                break;
+                } while (dbb.hasRemaining());
             }
+        } catch (ClosedByInterruptException e) {
+            // target closed by interrupt as ClosedByInterruptException needs
+            // to be thrown after closing this channel.
+            assert !target.isOpen();
+            try {
+                close();
+            } catch (Throwable suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        } catch (IOException ioe) {
+            // Only throw exception if no bytes have been written
+            if (remaining == count)
+                throw ioe;
+        } finally {
+            windows.close();
         }
         return count - remaining;
     }
@@ -700,25 +847,25 @@ public class FileChannelImpl
             long max = Math.min(count, src.size() - pos);
 
             long remaining = max;
-            long p = pos;
-            while (remaining > 0L) {
-                long size = Math.min(remaining, MAPPED_TRANSFER_SIZE);
-                // ## Bug: Closing this channel will not terminate the write
-                MappedByteBuffer bb = src.map(MapMode.READ_ONLY, p, size);
-                try {
-                    long n = write(bb, position);
-                    assert n > 0;
-                    p += n;
-                    position += n;
-                    remaining -= n;
-                } catch (IOException ioe) {
-                    // Only throw exception if no bytes have been written
-                    if (remaining == max)
-                        throw ioe;
-                    break;
-                } finally {
-                    unmap(bb);
+            MappedWindows windows = new MappedWindows(src, pos, max,
+                                                      MAPPED_TRANSFER_PREFETCH);
+            try {
+                MappedByteBuffer bb;
+                while ((bb = windows.advance()) != null) {
+                    do {
+                        // ## Bug: Closing this channel will not terminate the write
+                        long n = write(bb, position);
+                        assert n > 0;
+                        position += n;
+                        remaining -= n;
+                    } while (bb.hasRemaining());
                 }
+            } catch (IOException ioe) {
+                // Only throw exception if no bytes have been written
+                if (remaining == max)
+                    throw ioe;
+            } finally {
+                windows.close();
             }
             long nwritten = max - remaining;
             src.position(pos + nwritten);
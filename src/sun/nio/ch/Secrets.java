@@ -53,6 +53,24 @@ public final class Secrets {
         }
     }
 
+    /**
+     * Enables or disables a faster path for blocking reads and writes on a
+     * socket channel that its owner uses from one thread at a time. On that
+     * path, interrupting a thread blocked in a read or write does not close
+     * the channel; it can still be closed asynchronously.
+     *
+     * @throws UnsupportedOperationException if the channel is not from the
+     *         default provider
+     * @throws IOException if the channel is closed
+     */
+    public static void setSingleOwner(SocketChannel sc, boolean on)
+        throws IOException
+    {
+        if (!(sc instanceof SocketChannelImpl))
+            throw new UnsupportedOperationException();
+        ((SocketChannelImpl)sc).setSingleOwner(on);
+    }
+
     public static ServerSocketChannel newServerSocketChannel(FileDescriptor fd) {
         try {
             return new ServerSocketChannelImpl(provider(), fd, false);
@@ -50,6 +50,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 import sun.net.NetHooks;
@@ -86,11 +87,20 @@ class SocketChannelImpl
     private volatile boolean isInputClosed;
     private volatile boolean isOutputClosed;
 
+    // True if blocking reads and writes take the single-owner fast path,
+    // that is, if it has been enabled with setSingleOwner and the channel is in
+    // blocking mode, and the number of reads and writes on that path
+    private volatile boolean ownerPath;
+    private final AtomicInteger ownerOps = new AtomicInteger();
+
     // -- The following fields are protected by stateLock
 
     // set true when exclusive binding is on and SO_REUSEADDR is emulated
     private boolean isReuseAddress;
 
+    // set true by setSingleOwner
+    private boolean isSingleOwner;
+
     // State, increases monotonically
     private static final int ST_UNCONNECTED = 0;
     private static final int ST_CONNECTIONPENDING = 1;
@@ -100,9 +110,10 @@ class SocketChannelImpl
     private static final int ST_KILLED = 5;
     private volatile int state;  // need stateLock to change
 
-    // IDs of native threads doing reads and writes, for signalling
-    private long readerThread;
-    private long writerThread;
+    // IDs of native threads doing reads and writes, for signalling.
+    // Volatile as they are set without stateLock on the single-owner path
+    private volatile long readerThread;
+    private volatile long writerThread;
 
     // Binding
     private InetSocketAddress localAddress;
@@ -338,6 +349,8 @@ class SocketChannelImpl
     @Override
     public int read(ByteBuffer buf) throws IOException {
         Objects.requireNonNull(buf);
+        if (ownerPath && ownerBegin())
+            return (int) ownerRead(buf, null, 0, 0);
 
         readLock.lock();
         try {
@@ -373,6 +386,8 @@ class SocketChannelImpl
         throws IOException
     {
         Objects.checkFromIndexSize(offset, length, dsts.length);
+        if (ownerPath && ownerBegin())
+            return ownerRead(null, dsts, offset, length);
 
         readLock.lock();
         try {
@@ -451,6 +466,8 @@ class SocketChannelImpl
     @Override
     public int write(ByteBuffer buf) throws IOException {
         Objects.requireNonNull(buf);
+        if (ownerPath && ownerBegin())
+            return (int) ownerWrite(buf, null, 0, 0);
 
         writeLock.lock();
         try {
@@ -481,6 +498,8 @@ class SocketChannelImpl
         throws IOException
     {
         Objects.checkFromIndexSize(offset, length, srcs.length);
+        if (ownerPath && ownerBegin())
+            return ownerWrite(null, srcs, offset, length);
 
         writeLock.lock();
         try {
@@ -506,6 +525,177 @@ class SocketChannelImpl
         }
     }
 
+    /*
+     * Single-owner fast path for blocking reads and writes, enabled per
+     * channel with Secrets.setSingleOwner by a JDK-internal server
+     * that uses each channel from one thread at a time, as in
+     * thread-per-connection servers. The read and write locks and stateLock
+     * are not taken, and no interrupt hook is installed: interrupting a
+     * thread blocked in read or write does not close the channel.
+     *
+     * Asynchronous close still works as the reader or writer thread
+     * publishes itself in the volatile readerThread or writerThread field
+     * before checking the state, and implCloseSelectableChannel sets the
+     * state before reading those fields, so either the thread sees that the
+     * channel is closing or it is signalled and waited for.
+     *
+     * The path is only taken in blocking mode. A read or write counts itself
+     * in ownerOps before checking ownerPath again, and disableOwnerPath
+     * clears ownerPath before waiting for ownerOps to drop to zero, so
+     * configureBlocking(false) and disabling the path, both of which hold
+     * the read and write locks, wait for reads and writes already on the
+     * path to complete, as they do for reads and writes holding the locks.
+     */
+
+    /**
+     * Enables or disables the single-owner path for blocking reads and
+     * writes.
+     */
+    void setSingleOwner(boolean on) throws IOException {
+        synchronized (blockingLock()) {
+            readLock.lock();
+            try {
+                writeLock.lock();
+                try {
+                    synchronized (stateLock) {
+                        ensureOpen();
+                        isSingleOwner = on;
+                    }
+                    if (on && isBlocking()) {
+                        ownerPath = true;
+                    } else {
+                        disableOwnerPath();
+                    }
+                } finally {
+                    writeLock.unlock();
+                }
+            } finally {
+                readLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stops reads and writes from taking the single-owner path, and waits
+     * for those already on it to complete. Must be invoked holding the read
+     * and write locks.
+     */
+    private void disableOwnerPath() {
+        assert readLock.isHeldByCurrentThread() && writeLock.isHeldByCurrentThread();
+        ownerPath = false;
+        if (ownerOps.get() != 0) {
+            boolean interrupted = false;
+            synchronized (stateLock) {
+                while (ownerOps.get() != 0) {
+                    try {
+                        stateLock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Marks the start of a read or write on the single-owner path.
+     *
+     * @return false if the path has been disabled since ownerPath was
+     * checked, in which case the read or write must take the locks
+     */
+    private boolean ownerBegin() {
+        ownerOps.incrementAndGet();
+        if (ownerPath)
+            return true;
+        ownerExit();
+        return false;
+    }
+
+    /**
+     * Uncounts a read or write on the single-owner path, notifying any
+     * thread waiting for it in disableOwnerPath or implCloseSelectableChannel.
+     */
+    private void ownerExit() {
+        ownerOps.decrementAndGet();
+        if (!ownerPath || state == ST_CLOSING) {
+            synchronized (stateLock) {
+                stateLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Reads into buf, or into dsts if buf is null, on the single-owner path.
+     */
+    private long ownerRead(ByteBuffer buf,
+                           ByteBuffer[] dsts, int offset, int length)
+        throws IOException
+    {
+        long n = 0;
+        try {
+            readerThread = NativeThread.current();
+            ensureOpenAndConnected();
+
+            // check if input is shutdown
+            if (isInputClosed)
+                return IOStatus.EOF;
+
+            do {
+                n = (buf != null)
+                    ? IOUtil.read(fd, buf, -1, nd)
+                    : IOUtil.read(fd, dsts, offset, length, nd);
+            } while (n == IOStatus.INTERRUPTED && isOpen());
+        } finally {
+            readerThread = 0;
+            ownerEnd(n > 0);
+            if (n <= 0 && isInputClosed)
+                return IOStatus.EOF;
+        }
+        return IOStatus.normalize(n);
+    }
+
+    /**
+     * Writes from buf, or from srcs if buf is null, on the single-owner path.
+     */
+    private long ownerWrite(ByteBuffer buf,
+                            ByteBuffer[] srcs, int offset, int length)
+        throws IOException
+    {
+        long n = 0;
+        try {
+            writerThread = NativeThread.current();
+            ensureOpenAndConnected();
+            if (isOutputClosed)
+                throw new ClosedChannelException();
+            do {
+                n = (buf != null)
+                    ? IOUtil.write(fd, buf, -1, nd)
+                    : IOUtil.write(fd, srcs, offset, length, nd);
+            } while (n == IOStatus.INTERRUPTED && isOpen());
+        } finally {
+            writerThread = 0;
+            ownerEnd(n > 0);
+            if (n <= 0 && isOutputClosed)
+                throw new AsynchronousCloseException();
+        }
+        return IOStatus.normalize(n);
+    }
+
+    /**
+     * Marks the end of a single-owner read or write, after the thread field
+     * has been cleared.
+     *
+     * @throws AsynchronousCloseException if the channel was closed while the
+     * operation was in progress
+     */
+    private void ownerEnd(boolean completed) throws AsynchronousCloseException {
+        ownerExit();
+        if (!completed && !isOpen())
+            throw new AsynchronousCloseException();
+    }
+
     /**
      * Writes a byte of out of band data.
      */
@@ -540,9 +730,13 @@ class SocketChannelImpl
         try {
             writeLock.lock();
             try {
+                if (!block)
+                    disableOwnerPath();
                 synchronized (stateLock) {
                     ensureOpen();
                     IOUtil.configureBlocking(fd, block);
+                    if (block)
+                        ownerPath = isSingleOwner;
                 }
             } finally {
                 writeLock.unlock();
@@ -91,6 +91,13 @@ public class Util {
         return Long.MAX_VALUE;
     }
 
+    /**
+     * Returns the max size allowed for a cached temp buffer, in bytes.
+     */
+    static long maxCachedBufferSize() {
+        return MAX_CACHED_BUFFER_SIZE;
+    }
+
     /**
      * Returns true if a buffer of this size is too large to be
      * added to the buffer cache, false otherwise.
@@ -226,6 +233,9 @@ public class Util {
         if (isBufferTooLarge(size)) {
             return ByteBuffer.allocateDirect(size);
         }
+        if (DirectBufferPool.ENABLED) {
+            return DirectBufferPool.get(size);
+        }
 
         BufferCache cache = bufferCache.get();
         ByteBuffer buf = cache.get(size);
@@ -289,6 +299,9 @@ public class Util {
             free(buf);
             return;
         }
+        if (DirectBufferPool.ENABLED && DirectBufferPool.release(buf)) {
+            return;
+        }
 
         assert buf != null;
         BufferCache cache = bufferCache.get();
@@ -311,6 +324,9 @@ public class Util {
             free(buf);
             return;
         }
+        if (DirectBufferPool.ENABLED && DirectBufferPool.release(buf)) {
+            return;
+        }
 
         assert buf != null;
         BufferCache cache = bufferCache.get();
@@ -323,7 +339,7 @@ public class Util {
     /**
      * Frees the memory for the given direct buffer
      */
-    private static void free(ByteBuffer buf) {
+    static void free(ByteBuffer buf) {
         ((DirectBuffer)buf).cleaner().clean();
     }
 
@@ -28,6 +28,8 @@ package sun.security.util;
 import java.util.*;
 import java.lang.ref.*;
 
+import sun.security.action.GetIntegerAction;
+
 /**
  * Abstract base class and factory for caches. A cache is a key-value mapping.
  * It has properties that make it more suitable for caching than a Map.
@@ -67,6 +69,13 @@ import java.lang.ref.*;
  * buckets / 4 * 3. As mentioned above, with a SoftReference cache, it is
  * generally reasonable to set the size to a fairly large value.
  *
+ * Concurrency: by default each memory cache is guarded by a single lock.
+ * If the system property "jdk.security.cache.segments" is set to a value
+ * greater than 1, memory caches are split into that many independently
+ * locked segments, selected by key hash. Each segment holds an equal share
+ * of the maximum size and evicts in LRU order on its own, so replacement
+ * order across the whole cache becomes approximately LRU.
+ *
  * @author Andreas Sterbenz
  */
 public abstract class Cache<K,V> {
@@ -120,7 +129,7 @@ public abstract class Cache<K,V> {
      * lifetime for entries, with the values held by SoftReferences.
      */
     public static <K,V> Cache<K,V> newSoftMemoryCache(int size) {
-        return new MemoryCache<>(true, size);
+        return newMemoryCache(true, size, 0);
     }
 
     /**
@@ -129,7 +138,7 @@ public abstract class Cache<K,V> {
      * by SoftReferences.
      */
     public static <K,V> Cache<K,V> newSoftMemoryCache(int size, int timeout) {
-        return new MemoryCache<>(true, size, timeout);
+        return newMemoryCache(true, size, timeout);
     }
 
     /**
@@ -137,7 +146,7 @@ public abstract class Cache<K,V> {
      * lifetime for entries, with the values held by standard references.
      */
     public static <K,V> Cache<K,V> newHardMemoryCache(int size) {
-        return new MemoryCache<>(false, size);
+        return newMemoryCache(false, size, 0);
     }
 
     /**
@@ -154,7 +163,23 @@ public abstract class Cache<K,V> {
      * by standard references.
      */
     public static <K,V> Cache<K,V> newHardMemoryCache(int size, int timeout) {
-        return new MemoryCache<>(false, size, timeout);
+        return newMemoryCache(false, size, timeout);
+    }
+
+    /**
+     * Return a single-lock or a segmented memory cache, depending on the
+     * "jdk.security.cache.segments" system property.
+     */
+    private static <K,V> Cache<K,V> newMemoryCache(boolean soft, int size,
+            int timeout) {
+        int segments = SegmentedMemoryCache.SEGMENTS;
+        // a segment must be able to hold at least a few entries, otherwise
+        // the per-segment LRU order is too coarse to be useful
+        if (segments > 1 && (size <= 0 ||
+                size >= segments * SegmentedMemoryCache.MIN_SEGMENT_SIZE)) {
+            return new SegmentedMemoryCache<>(soft, size, timeout, segments);
+        }
+        return new MemoryCache<>(soft, size, timeout);
     }
 
     /**
@@ -238,6 +263,105 @@ class NullCache<K,V> extends Cache<K,V> {
 
 }
 
+/**
+ * A memory cache split into a fixed number of MemoryCache segments, each
+ * with its own lock, so that threads using different keys do not contend.
+ * Soft reference and lifetime handling are those of MemoryCache; the
+ * maximum size is divided evenly between the segments.
+ */
+class SegmentedMemoryCache<K,V> extends Cache<K,V> {
+
+    // number of segments, rounded up to a power of two; 1 disables
+    static final int SEGMENTS;
+    static {
+        Integer n = GetIntegerAction.privilegedGetProperty(
+                "jdk.security.cache.segments", 1);
+        int s = 1;
+        if (n != null && n > 1) {
+            while (s < n && s < (1 << 16)) {
+                s <<= 1;
+            }
+        }
+        SEGMENTS = s;
+    }
+
+    static final int MIN_SEGMENT_SIZE = 8;
+
+    private final MemoryCache<K,V>[] segments;
+
+    @SuppressWarnings("unchecked")
+    SegmentedMemoryCache(boolean soft, int maxSize, int lifetime,
+            int segmentCount) {
+        segments = (MemoryCache<K,V>[])new MemoryCache<?,?>[segmentCount];
+        int segmentSize = segmentSize(maxSize);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new MemoryCache<>(soft, segmentSize, lifetime);
+        }
+    }
+
+    private int segmentSize(int maxSize) {
+        if (maxSize <= 0) {
+            return 0;
+        }
+        return Math.max(1, (maxSize + segments.length - 1) / segments.length);
+    }
+
+    private MemoryCache<K,V> segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    public int size() {
+        int size = 0;
+        for (MemoryCache<K,V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (MemoryCache<K,V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public void put(K key, V value) {
+        segmentFor(key).put(key, value);
+    }
+
+    public V get(Object key) {
+        return segmentFor(key).get(key);
+    }
+
+    public void remove(Object key) {
+        segmentFor(key).remove(key);
+    }
+
+    public void setCapacity(int size) {
+        int segmentSize = segmentSize(size);
+        for (MemoryCache<K,V> segment : segments) {
+            segment.setCapacity(segmentSize);
+        }
+    }
+
+    public void setTimeout(int timeout) {
+        for (MemoryCache<K,V> segment : segments) {
+            segment.setTimeout(timeout);
+        }
+    }
+
+    // it is a heavyweight method. Each segment is visited under its own
+    // lock, so the combined view is not an atomic snapshot.
+    public void accept(CacheVisitor<K,V> visitor) {
+        Map<K,V> cached = new HashMap<>();
+        for (MemoryCache<K,V> segment : segments) {
+            segment.accept(cached::putAll);
+        }
+        visitor.visit(cached);
+    }
+}
+
 class MemoryCache<K,V> extends Cache<K,V> {
 
     private static final float LOAD_FACTOR = 0.75f;